@@ -0,0 +1,46 @@
+package net.resthub.benchmark;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Collections;
+
+import net.resthub.ConnectionFactory;
+import oracle.jdbc.OracleConnection;
+
+/**
+ * BenchmarkConnectionFactory: single named connection without a database
+ * behind, benchmarks do not reach JDBC.
+ * @author valdo
+ */
+public class BenchmarkConnectionFactory implements ConnectionFactory {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String CONNECTION_NAME = "bench";
+
+    @Override
+    public Collection<String> getConnectionNames() {
+        return Collections.singleton(CONNECTION_NAME);
+    }
+
+    @Override
+    public OracleConnection getConnection(String name) throws SQLException {
+        throw new UnsupportedOperationException("No database in benchmarks");
+    }
+
+    @Override
+    public String getUrl(String name) {
+        throw new UnsupportedOperationException("No database in benchmarks");
+    }
+
+    @Override
+    public String getUsername(String name) {
+        throw new UnsupportedOperationException("No database in benchmarks");
+    }
+
+    @Override
+    public String getPassword(String name) {
+        throw new UnsupportedOperationException("No database in benchmarks");
+    }
+
+}
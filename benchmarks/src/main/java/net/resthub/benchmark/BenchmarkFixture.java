@@ -0,0 +1,70 @@
+package net.resthub.benchmark;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.assistedinject.FactoryModuleBuilder;
+
+import lombok.Getter;
+import net.resthub.ConnectionFactory;
+import net.resthub.factory.TableBuilder;
+import net.resthub.server.factory.MetadataFactoryIf;
+import net.resthub.server.factory.ResourceFactory;
+import net.resthub.server.handler.DataHandler;
+import net.resthub.server.query.Query;
+import net.sf.jsqlparser.parser.CCJSqlParserManager;
+
+import org.restlet.data.Form;
+
+/**
+ * BenchmarkFixture: injector with generated metadata and no database,
+ * shared by all benchmarks of a fork.
+ * @author valdo
+ */
+@Getter
+public class BenchmarkFixture {
+
+    private static BenchmarkFixture instance;
+
+    private final Injector injector;
+    private final ResourceFactory rf;
+
+    private BenchmarkFixture() {
+        this.injector = Guice.createInjector(new AbstractModule() {
+
+            @Override
+            protected void configure() {
+                install(new FactoryModuleBuilder().build(ResourceFactory.class));
+                bind(MetadataFactoryIf.class).to(BenchmarkMetadataFactory.class);
+                bind(TableBuilder.class).to(BenchmarkTableBuilder.class);
+                bind(CCJSqlParserManager.class).toInstance(new CCJSqlParserManager());
+                bind(ConnectionFactory.class).toInstance(new BenchmarkConnectionFactory());
+            }
+
+        });
+        this.rf = injector.getInstance(ResourceFactory.class);
+    }
+
+    public static synchronized BenchmarkFixture get() {
+        if (instance == null) {
+            instance = new BenchmarkFixture();
+        }
+        return instance;
+    }
+
+    public Query query(String sql) throws Exception {
+        return rf.create(rf.create(sql));
+    }
+
+    /**
+     * Data handler without injected members: sufficient for converters
+     * and ids, the handler never reaches the cache or the database.
+     * @param query
+     * @param queryString
+     * @return
+     */
+    public DataHandler handler(Query query, String queryString) {
+        return new DataHandler(query, new Form(queryString));
+    }
+
+}
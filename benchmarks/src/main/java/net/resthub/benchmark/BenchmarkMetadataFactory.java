@@ -0,0 +1,55 @@
+package net.resthub.benchmark;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import net.resthub.model.MdTable;
+import net.resthub.server.factory.MetadataFactoryIf;
+import net.resthub.server.factory.ResourceFactory;
+import net.resthub.server.table.ServerTable;
+import net.resthub.server.table.TableId;
+
+/**
+ * BenchmarkMetadataFactory: generated tables of all data shapes.
+ * @author valdo
+ */
+@Singleton
+public class BenchmarkMetadataFactory implements MetadataFactoryIf {
+
+    private final Map<TableId, ServerTable> tables = new ConcurrentHashMap<>();
+
+    @Inject
+    public BenchmarkMetadataFactory(ResourceFactory rf) {
+        for (DataGenerator.Shape shape: DataGenerator.Shape.values()) {
+            add(rf, DataGenerator.createTable(shape));
+        }
+        add(rf, DataGenerator.createParameterTable());
+    }
+
+    private void add(ResourceFactory rf, MdTable t) {
+        tables.put(new TableId(t), rf.create(t));
+    }
+
+    @Override
+    public ServerTable getTable(TableId id) {
+        return tables.get(id);
+    }
+
+    @Override
+    public Collection<ServerTable> getTables() {
+        return tables.values();
+    }
+
+    @Override
+    public boolean hasTable(TableId id) {
+        return tables.containsKey(id);
+    }
+
+    @Override
+    public void refresh() { }
+
+}
@@ -0,0 +1,38 @@
+package net.resthub.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * BenchmarkRunner: runs benchmarks with the usual JMH command line
+ * options, results are written as JSON to target/jmh-result.json
+ * unless set otherwise (-rf, -rff).
+ * @author valdo
+ */
+public class BenchmarkRunner {
+
+    public static final String DEFAULT_RESULT = "target/jmh-result.json";
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cmd = new CommandLineOptions(args);
+        OptionsBuilder options = new OptionsBuilder();
+        options.parent(cmd);
+
+        if (!cmd.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+
+        if (!cmd.getResult().hasValue()) {
+            options.result(DEFAULT_RESULT);
+        }
+
+        if (cmd.getIncludes().isEmpty()) {
+            options.include(BenchmarkRunner.class.getPackage().getName() + "\\..*Benchmark");
+        }
+
+        new Runner(options.build()).run();
+    }
+
+}
@@ -0,0 +1,53 @@
+package net.resthub.benchmark;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.inject.Inject;
+
+import net.resthub.factory.TableBuilder;
+import net.resthub.model.MdColumn;
+import net.resthub.server.factory.MetadataFactoryIf;
+import net.resthub.server.table.ServerTable;
+import net.resthub.server.table.TableId;
+import net.resthub.util.CNameUtil;
+
+/**
+ * BenchmarkTableBuilder: collects query columns from the table metadata
+ * instead of describing the statement in the database, as reported by
+ * the driver. Benchmark queries select all columns of the first table.
+ * @author valdo
+ */
+public class BenchmarkTableBuilder extends TableBuilder {
+
+    private static final long serialVersionUID = 1L;
+    private static final Pattern TABLE_PATTERN = Pattern.compile(
+            "\\b" + DataGenerator.PHYSICAL_PREFIX + "(\\w+)\\b", Pattern.CASE_INSENSITIVE);
+
+    @Inject
+    private MetadataFactoryIf mf;
+
+    @Override
+    public void collectColumns(String connectionName, String sql, List<MdColumn> columns) throws Exception {
+        Matcher m = TABLE_PATTERN.matcher(sql);
+        if (m.find()) {
+            ServerTable t = mf.getTable(new TableId(DataGenerator.NAMESPACE, m.group(1).toLowerCase()));
+            if (t != null) {
+                columns.clear();
+                int number = 1;
+                for (MdColumn c: t.getTable().getColumns()) {
+                    MdColumn col = new MdColumn();
+                    col.setName(c.getName().toUpperCase());
+                    col.setCName(CNameUtil.normalize(col.getName()));
+                    col.setNumber(number++);
+                    col.setType(c.getType());
+                    columns.add(col);
+                }
+                return;
+            }
+        }
+        throw new IllegalArgumentException(String.format("No benchmark table in %s", sql));
+    }
+
+}
@@ -0,0 +1,95 @@
+package net.resthub.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import net.resthub.server.cache.CcData;
+import net.resthub.server.converter.CSVConverter;
+import net.resthub.server.converter.DataConverter;
+import net.resthub.server.converter.JSONConverter;
+import net.resthub.server.converter.XMLConverter;
+import net.resthub.server.handler.DataHandler;
+import net.resthub.server.query.Query;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.restlet.data.Reference;
+import org.restlet.representation.Representation;
+
+/**
+ * ConverterBenchmark: data page conversion to the response media types,
+ * including writing of the representation.
+ * @author valdo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConverterBenchmark {
+
+    private static final Reference REFERENCE = new Reference("http://localhost:8080/api/query/bench/data");
+    private static final OutputStream NULL = new OutputStream() {
+
+        @Override
+        public void write(int b) throws IOException { }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException { }
+
+    };
+
+    @Param({"json", "xml", "csv"})
+    public String format;
+
+    @Param({"NARROW", "WIDE", "TEXT"})
+    public DataGenerator.Shape shape;
+
+    @Param({"10", "1000"})
+    public int rows;
+
+    private DataConverter converter;
+    private DataHandler handler;
+    private CcData data;
+
+    @Setup
+    public void setup() throws Exception {
+        switch (format) {
+            case "json":
+                converter = new JSONConverter();
+                break;
+            case "xml":
+                converter = new XMLConverter();
+                break;
+            case "csv":
+                converter = new CSVConverter();
+                break;
+            default:
+                throw new IllegalArgumentException(format);
+        }
+
+        BenchmarkFixture fixture = BenchmarkFixture.get();
+        Query query = fixture.query(shape.getQuerySql());
+        handler = fixture.handler(query, "");
+        data = DataGenerator.generate(shape, rows);
+    }
+
+    @Benchmark
+    public Representation convert() throws Exception {
+        Representation r = converter.convert(handler, REFERENCE, data);
+        r.write(NULL);
+        return r;
+    }
+
+}
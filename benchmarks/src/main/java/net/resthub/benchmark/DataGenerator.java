@@ -0,0 +1,180 @@
+package net.resthub.benchmark;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import lombok.Getter;
+import net.resthub.model.MdColumn;
+import net.resthub.model.MdParameter;
+import net.resthub.model.MdTable;
+import net.resthub.model.MdType;
+import net.resthub.server.cache.CcData;
+
+/**
+ * DataGenerator: synthetic tables and rows for benchmarks. Rows are
+ * generated from a fixed seed so that every run (and every fork) works
+ * on the same data.
+ * @author valdo
+ */
+public class DataGenerator {
+
+    public static final long SEED = 42L;
+    public static final String NAMESPACE = "bench";
+    public static final String PHYSICAL_PREFIX = "bench_";
+
+    private static final long DATE_BASE = 1388534400000L; // 2014-01-01
+    private static final long DATE_RANGE = 365L * 24 * 3600 * 1000;
+    private static final double NULL_RATIO = 0.05;
+    private static final char[] CHARS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789 ".toCharArray();
+
+    /**
+     * Row shapes: column types and string lengths.
+     */
+    @Getter
+    public enum Shape {
+
+        NARROW(16, MdType.NUMBER, MdType.STRING, MdType.NUMBER),
+        WIDE(16, repeat(8, MdType.NUMBER), repeat(8, MdType.STRING), repeat(4, MdType.DATE)),
+        TEXT(512, MdType.NUMBER, MdType.STRING, MdType.STRING, MdType.STRING, MdType.STRING);
+
+        private final int textLength;
+        private final List<MdType> types = new ArrayList<>();
+
+        private Shape(int textLength, Object... types) {
+            this.textLength = textLength;
+            for (Object t: types) {
+                if (t instanceof MdType[]) {
+                    this.types.addAll(Arrays.asList((MdType[]) t));
+                } else {
+                    this.types.add((MdType) t);
+                }
+            }
+        }
+
+        public String getTableName() {
+            return name().toLowerCase();
+        }
+
+        public String getQuerySql() {
+            return String.format("select * from %s.%s t", NAMESPACE, getTableName());
+        }
+
+    }
+
+    private static MdType[] repeat(int n, MdType type) {
+        MdType[] ret = new MdType[n];
+        Arrays.fill(ret, type);
+        return ret;
+    }
+
+    /**
+     * Column name of the type and position, i.e. n1, s2, d1.
+     * @param types
+     * @param i
+     * @return
+     */
+    private static String columnName(List<MdType> types, int i) {
+        MdType type = types.get(i);
+        int n = Collections.frequency(types.subList(0, i + 1), type);
+        return type.name().substring(0, 1).toLowerCase() + n;
+    }
+
+    /**
+     * Name of the (not existing) database table behind the table.
+     * @param tableName
+     * @return
+     */
+    public static String physicalName(String tableName) {
+        return PHYSICAL_PREFIX + tableName;
+    }
+
+    public static MdTable createTable(Shape shape) {
+        MdTable t = new MdTable();
+        t.setNamespace(NAMESPACE);
+        t.setName(shape.getTableName());
+        t.setConnectionName(BenchmarkConnectionFactory.CONNECTION_NAME);
+        t.setSql(String.format("select * from %s", physicalName(shape.getTableName())));
+        for (int i = 0; i < shape.getTypes().size(); i++) {
+            MdColumn c = new MdColumn();
+            c.setName(columnName(shape.getTypes(), i));
+            c.setType(shape.getTypes().get(i));
+            c.setTable(t);
+            t.getColumns().add(c);
+        }
+        return t;
+    }
+
+    /**
+     * Table with a scalar and an array parameter.
+     * @return
+     */
+    public static MdTable createParameterTable() {
+        MdTable t = createTable(Shape.NARROW);
+        t.setName("param");
+        t.setSql(String.format("select * from %s where n1 = :id and s1 in (:names)", physicalName(t.getName())));
+        t.getParameters().add(parameter(t, "id", MdType.NUMBER, false));
+        t.getParameters().add(parameter(t, "names", MdType.STRING, true));
+        return t;
+    }
+
+    private static MdParameter parameter(MdTable t, String name, MdType type, boolean array) {
+        MdParameter p = new MdParameter();
+        p.setName(name);
+        p.setType(type);
+        p.setArray(array);
+        p.setTable(t);
+        return p;
+    }
+
+    /**
+     * Generate rows of the shape.
+     * @param shape
+     * @param rows
+     * @return data as cached by the data exporter
+     */
+    public static CcData generate(Shape shape, int rows) {
+        Random random = new Random(SEED);
+        List<Object[]> value = new ArrayList<>(rows);
+        List<MdType> types = shape.getTypes();
+        for (int r = 0; r < rows; r++) {
+            Object[] row = new Object[types.size()];
+            for (int c = 0; c < row.length; c++) {
+                if (c > 0 && random.nextDouble() < NULL_RATIO) {
+                    continue;
+                }
+                switch (types.get(c)) {
+                    case NUMBER:
+                        row[c] = c == 0
+                            ? BigDecimal.valueOf(r)
+                            : BigDecimal.valueOf(random.nextInt(1000000), random.nextInt(4));
+                        break;
+                    case STRING:
+                        row[c] = text(random, 1 + random.nextInt(shape.getTextLength()));
+                        break;
+                    case DATE:
+                        row[c] = new Date(DATE_BASE + (long) (random.nextDouble() * DATE_RANGE));
+                        break;
+                }
+            }
+            value.add(row);
+        }
+
+        CcData data = new CcData();
+        data.setValue(value);
+        return data;
+    }
+
+    private static String text(Random random, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = CHARS[random.nextInt(CHARS.length)];
+        }
+        return new String(chars);
+    }
+
+}
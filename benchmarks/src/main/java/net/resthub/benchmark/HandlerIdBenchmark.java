@@ -0,0 +1,78 @@
+package net.resthub.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import net.resthub.server.handler.DataHandler;
+import net.resthub.server.handler.HandlerId;
+import net.resthub.server.query.Query;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * HandlerIdBenchmark: cache key computation of a request, i.e. handler
+ * creation from the query string and its id and stable key.
+ * @author valdo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HandlerIdBenchmark {
+
+    @Param({"none", "scalar", "array"})
+    public String parameters;
+
+    private Query query;
+    private String queryString;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkFixture fixture = BenchmarkFixture.get();
+        switch (parameters) {
+            case "none":
+                query = fixture.query(DataGenerator.Shape.NARROW.getQuerySql());
+                queryString = "";
+                break;
+            case "scalar":
+                query = fixture.query("select * from bench.param p");
+                queryString = "p.id=12345";
+                break;
+            case "array":
+                query = fixture.query("select * from bench.param p");
+                queryString = "p.id=12345&p.names=%5B%22alpha%22%2C%22beta%22%2C%22gamma%22%2C%22delta%22%5D";
+                break;
+            default:
+                throw new IllegalArgumentException(parameters);
+        }
+    }
+
+    private DataHandler handler() {
+        DataHandler handler = BenchmarkFixture.get().handler(query, queryString);
+        handler.setPerPage(100);
+        handler.setPage(3);
+        return handler;
+    }
+
+    @Benchmark
+    public HandlerId id() {
+        return handler().getId();
+    }
+
+    @Benchmark
+    public String stableKey() {
+        return handler().getStableKey();
+    }
+
+}
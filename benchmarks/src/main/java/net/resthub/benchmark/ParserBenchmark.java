@@ -0,0 +1,99 @@
+package net.resthub.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import net.resthub.server.factory.ResourceFactory;
+import net.resthub.server.parser.check.CheckSelectParser;
+import net.resthub.server.parser.check.SubSelectDef;
+import net.resthub.server.parser.update.UpdateSelectParser;
+import net.resthub.server.query.Query;
+import net.resthub.server.query.QueryId;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * ParserBenchmark: query compilation stages, each benchmark includes
+ * the previous ones as every stage needs a freshly parsed statement.
+ * @author valdo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+    @Param({"simple", "join", "subquery", "parameters"})
+    public String query;
+
+    private ResourceFactory rf;
+    private String sql;
+
+    @Setup
+    public void setup() {
+        switch (query) {
+            case "simple":
+                sql = "select * from bench.narrow n";
+                break;
+            case "join":
+                sql = "select n.n1, n.s1, w.s1, w.d1 from bench.narrow n join bench.wide w on n.n1 = w.n1 "
+                    + "where w.n2 > 100";
+                break;
+            case "subquery":
+                sql = "select * from (select t.n1, t.s1 from bench.text t) b "
+                    + "where b.n1 in (select w.n1 from bench.wide w where w.s1 = 'A')";
+                break;
+            case "parameters":
+                sql = "select p.n1, p.s1, p.n2 from bench.param p where p.n2 > :min";
+                break;
+            default:
+                throw new IllegalArgumentException(query);
+        }
+        rf = BenchmarkFixture.get().getRf();
+    }
+
+    @Benchmark
+    public QueryId parse() {
+        return rf.create(sql);
+    }
+
+    @Benchmark
+    public CheckSelectParser check() {
+        QueryId qid = rf.create(sql);
+        CheckSelectParser checkParser = rf.createSelectParser((SubSelectDef) null);
+        qid.getSelect().getSelectBody().accept(checkParser);
+        return checkParser;
+    }
+
+    @Benchmark
+    public String update() {
+        QueryId qid = rf.create(sql);
+        CheckSelectParser checkParser = rf.createSelectParser((SubSelectDef) null);
+        qid.getSelect().getSelectBody().accept(checkParser);
+        UpdateSelectParser updateParser = new UpdateSelectParser(checkParser);
+        qid.getSelect().getSelectBody().accept(updateParser);
+        return qid.getSelect().toString();
+    }
+
+    /**
+     * Complete query registration: parsers, columns and select SQL.
+     * @return
+     * @throws Exception
+     */
+    @Benchmark
+    public Query compile() throws Exception {
+        return rf.create(rf.create(sql));
+    }
+
+}
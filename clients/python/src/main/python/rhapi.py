@@ -68,9 +68,9 @@ class RhApi:
                 print arg, 
             print
 
-    def get(self, parts, data = None, headers = None, params = None):
+    def open(self, parts, data = None, headers = None, params = None):
         """
-        General API call (do not use it directly!)
+        Open API call and return response object (do not use it directly!)
         """
 
         #
@@ -105,18 +105,26 @@ class RhApi:
                 self.dprint("Response", " ".join(str(resp.info()).split("\r\n")))
 
         if not has_getcode or resp.getcode() == 200:
-            rdata = resp.read()
-            if re.search("json", resp.info().gettype()):
-                try:
-                    return json.loads(rdata)
-                except TypeError, e:
-                    self.dprint(e)
-                    return rdata
-            else:
-                return rdata
+            return resp
         else:
             raise RhApiError(resp)
 
+    def get(self, parts, data = None, headers = None, params = None):
+        """
+        General API call (do not use it directly!)
+        """
+
+        resp = self.open(parts, data, headers, params)
+        rdata = resp.read()
+        if re.search("json", resp.info().gettype()):
+            try:
+                return json.loads(rdata)
+            except TypeError, e:
+                self.dprint(e)
+                return rdata
+        else:
+            return rdata
+
     def folders(self):
         """
         Get list of folders
@@ -181,6 +189,20 @@ class RhApi:
         """
         return self.data(query, params, 'application/json', pagesize, page)
 
+    def ndjson(self, query, params = None, pagesize = None, page = None):
+        """
+        Iterate over rows in NDJSON format as they arrive
+        """
+        qid = self.query(query)
+        ps = ["query", qid]
+        if pagesize != None and page != None:
+            ps.extend(["page", pagesize, page]);
+        ps.append("data")
+        resp = self.open(ps, None, { "Accept": "application/x-ndjson" }, params)
+        for line in resp:
+            if line.strip() != "":
+                yield json.loads(line)
+
 if __name__ == '__main__':
 
     print "RestHub API library."
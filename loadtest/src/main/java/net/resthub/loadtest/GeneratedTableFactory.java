@@ -0,0 +1,80 @@
+package net.resthub.loadtest;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import net.resthub.TableFactory;
+import net.resthub.model.MdParameter;
+import net.resthub.model.MdTable;
+import net.resthub.model.MdType;
+
+/**
+ * GeneratedTableFactory: tables over the generated database tables,
+ * lt.data_{n} with all rows and lt.category_{n} with the category parameter.
+ * @author valdo
+ */
+public class GeneratedTableFactory implements TableFactory {
+
+    public static final String NAMESPACE = "lt";
+
+    private final LoadTestConfig cfg;
+    private final Date updateTime = new Date();
+
+    public GeneratedTableFactory(LoadTestConfig cfg) {
+        this.cfg = cfg;
+    }
+
+    @Override
+    public boolean isRefreshable() {
+        return false;
+    }
+
+    @Override
+    public boolean isRefresh(Date lastUpdate) {
+        return lastUpdate == null;
+    }
+
+    @Override
+    public List<MdTable> getTables() throws Exception {
+        List<MdTable> tables = new ArrayList<>();
+        for (int t = 1; t <= cfg.getTables(); t++) {
+            String dbTable = H2Database.getTableName(t);
+            tables.add(createTable(getDataTable(t), String.format("select * from %s", dbTable)));
+
+            MdTable ct = createTable(getCategoryTable(t), String.format("select * from %s where CATEGORY = :category", dbTable));
+            MdParameter p = new MdParameter();
+            p.setName("category");
+            p.setType(MdType.NUMBER);
+            p.setArray(Boolean.FALSE);
+            p.setTable(ct);
+            ct.getParameters().add(p);
+            tables.add(ct);
+        }
+        return tables;
+    }
+
+    public static String getDataTable(int t) {
+        return "data_" + t;
+    }
+
+    public static String getCategoryTable(int t) {
+        return "category_" + t;
+    }
+
+    private MdTable createTable(String name, String sql) {
+        MdTable t = new MdTable();
+        t.setNamespace(NAMESPACE);
+        t.setName(name);
+        t.setConnectionName(H2ConnectionFactory.CONNECTION_NAME);
+        t.setSql(sql);
+        t.setCacheTime(cfg.getCacheTime());
+        t.setHitCount(cfg.getHitCount());
+        t.setUpdateTime(updateTime);
+        return t;
+    }
+
+    @Override
+    public void close() throws Exception { }
+
+}
@@ -0,0 +1,92 @@
+package net.resthub.loadtest;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.regex.Pattern;
+
+import net.resthub.ConnectionFactory;
+import oracle.jdbc.OracleConnection;
+
+/**
+ * H2ConnectionFactory: single connection to the load test database.
+ * Connections are H2 connections behind the OracleConnection interface:
+ * plain JDBC calls are delegated, Oracle extensions are not supported.
+ * Named binds are rewritten to positional ones as H2 does not accept them.
+ * @author valdo
+ */
+public class H2ConnectionFactory implements ConnectionFactory {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String CONNECTION_NAME = "lt";
+
+    private static final Pattern NAMED_BIND = Pattern.compile("(?<![:\\w]):\\w+");
+
+    private final String url;
+
+    public H2ConnectionFactory(H2Database db) {
+        this.url = db.getUrl();
+    }
+
+    @Override
+    public Collection<String> getConnectionNames() {
+        return Collections.singleton(CONNECTION_NAME);
+    }
+
+    @Override
+    public OracleConnection getConnection(String name) throws SQLException {
+        final Connection con = DriverManager.getConnection(getUrl(name), getUsername(name), getPassword(name));
+        return (OracleConnection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { OracleConnection.class },
+                new InvocationHandler() {
+
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if (!method.getDeclaringClass().isAssignableFrom(Connection.class)) {
+                            throw new UnsupportedOperationException(String.format("%s is not supported by H2", method));
+                        }
+                        if (method.getName().startsWith("prepare") && args != null && args[0] instanceof String) {
+                            args[0] = NAMED_BIND.matcher((String) args[0]).replaceAll("?");
+                        }
+                        try {
+                            return method.invoke(con, args);
+                        } catch (InvocationTargetException ex) {
+                            throw ex.getCause();
+                        }
+                    }
+
+                });
+    }
+
+    @Override
+    public String getUrl(String name) {
+        checkName(name);
+        return url;
+    }
+
+    @Override
+    public String getUsername(String name) {
+        checkName(name);
+        return H2Database.USERNAME;
+    }
+
+    @Override
+    public String getPassword(String name) {
+        checkName(name);
+        return H2Database.PASSWORD;
+    }
+
+    private void checkName(String name) {
+        if (!CONNECTION_NAME.equals(name)) {
+            throw new IllegalArgumentException(String.format("Unknown connection %s", name));
+        }
+    }
+
+}
@@ -0,0 +1,81 @@
+package net.resthub.loadtest;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import lombok.Getter;
+import lombok.extern.log4j.Log4j;
+
+/**
+ * H2Database: in-memory H2 database in Oracle compatibility mode with
+ * generated data tables LT_DATA_{n}. Row values are derived from the row
+ * number, so the same configuration always produces the same data.
+ * Kept open by a single connection until closed.
+ * @author valdo
+ */
+@Log4j
+@Getter
+public class H2Database implements AutoCloseable {
+
+    public static final String DRIVER = "org.h2.Driver";
+    public static final String USERNAME = "sa";
+    public static final String PASSWORD = "";
+
+    public static final String[] COLUMNS = { "ID", "NAME", "CATEGORY", "AMOUNT", "CREATED", "NOTE", "IMAGE" };
+    public static final int NOTE_COLUMN = 5;
+    public static final int IMAGE_COLUMN = 6;
+
+    private final String url;
+    private final Connection connection;
+
+    public H2Database(LoadTestConfig cfg) throws Exception {
+        Class.forName(DRIVER);
+        this.url = String.format("jdbc:h2:mem:loadtest%d;MODE=Oracle;DB_CLOSE_DELAY=-1", System.nanoTime());
+        this.connection = DriverManager.getConnection(url, USERNAME, PASSWORD);
+
+        try (Statement st = connection.createStatement()) {
+            st.execute("CREATE SCHEMA IF NOT EXISTS DBMS_LOB");
+            st.execute(String.format("CREATE ALIAS IF NOT EXISTS DBMS_LOB.GETLENGTH FOR \"%s.getLength\"",
+                    H2Functions.class.getName()));
+
+            for (int t = 1; t <= cfg.getTables(); t++) {
+                long start = System.currentTimeMillis();
+                String table = getTableName(t);
+                st.execute(String.format("CREATE TABLE %s ("
+                        + "ID NUMBER(10) PRIMARY KEY, "
+                        + "NAME VARCHAR2(64), "
+                        + "CATEGORY NUMBER(10), "
+                        + "AMOUNT NUMBER(12,2), "
+                        + "CREATED DATE, "
+                        + "NOTE CLOB, "
+                        + "IMAGE BLOB)", table));
+                st.execute(String.format("INSERT INTO %s SELECT X, "
+                        + "'name-' || X, "
+                        + "MOD(X, %d), "
+                        + "MOD(X * 7919, 10000000) / 100, "
+                        + "DATEADD('SECOND', X * 60, TIMESTAMP '2014-01-01 00:00:00'), "
+                        + "REPEAT('note ' || X || ' ', MOD(X, 100) + 1), "
+                        + "CAST(REPEAT('CAFEBABE', MOD(X, 64) + 1) AS BLOB) "
+                        + "FROM SYSTEM_RANGE(1, %d)", table, cfg.getCategories(), cfg.getRows()));
+                st.execute(String.format("CREATE INDEX %s_CATEGORY ON %s (CATEGORY)", table, table));
+                log.info(String.format("%s: %d rows generated in %d ms", table, cfg.getRows(), System.currentTimeMillis() - start));
+            }
+        }
+    }
+
+    public static String getTableName(int t) {
+        return "LT_DATA_" + t;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        try (Statement st = connection.createStatement()) {
+            st.execute("SHUTDOWN");
+        } finally {
+            connection.close();
+        }
+    }
+
+}
@@ -0,0 +1,36 @@
+package net.resthub.loadtest;
+
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.SQLException;
+
+/**
+ * H2Functions: Oracle built-in functions used by the server SQL,
+ * registered as H2 aliases.
+ * @author valdo
+ */
+public class H2Functions {
+
+    /**
+     * DBMS_LOB.GETLENGTH
+     * @param lob
+     * @return characters for CLOB, bytes for BLOB
+     * @throws SQLException
+     */
+    public static Long getLength(Object lob) throws SQLException {
+        if (lob == null) {
+            return null;
+        }
+        if (lob instanceof Clob) {
+            return ((Clob) lob).length();
+        }
+        if (lob instanceof Blob) {
+            return ((Blob) lob).length();
+        }
+        if (lob instanceof byte[]) {
+            return (long) ((byte[]) lob).length;
+        }
+        return (long) lob.toString().length();
+    }
+
+}
@@ -0,0 +1,70 @@
+package net.resthub.loadtest;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import lombok.extern.log4j.Log4j;
+import net.resthub.server.ServerApp;
+import net.resthub.server.ServerAppConfig;
+
+import org.restlet.Component;
+import org.restlet.data.Protocol;
+
+/**
+ * LoadTest: boots the server over a generated in-memory database and
+ * drives it with the configured workload, i.e.
+ * LoadTest threads=32 rows=100000 durationSeconds=120
+ * @author valdo
+ */
+@Log4j
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        LoadTestConfig cfg = LoadTestConfig.parse(args);
+        log.info(cfg);
+
+        try (H2Database db = new H2Database(cfg)) {
+
+            // Server-Timing is read for the stage breakdown of the report
+            ServerAppConfig scfg = new ServerAppConfig();
+            scfg.setServerTiming(true);
+            
+            ServerApp app = new ServerApp(new H2ConnectionFactory(db), new GeneratedTableFactory(cfg), scfg);
+            Component component = new Component();
+            component.getServers().add(Protocol.HTTP, cfg.getPort());
+            component.getDefaultHost().attach(app);
+            component.start();
+
+            try {
+
+                WorkloadDriver driver = new WorkloadDriver(cfg, "http://localhost:" + cfg.getPort());
+                driver.prepare();
+
+                if (cfg.getWarmupSeconds() > 0) {
+                    log.info(String.format("Warmup: %s", driver.run(cfg.getWarmupSeconds() * 1000L)));
+                }
+
+                WorkloadReport report = driver.run(cfg.getDurationSeconds() * 1000L);
+                report.setServerCache(driver.getServerCache());
+                System.out.print(report);
+
+                File file = new File(cfg.getReport());
+                if (file.getParentFile() != null) {
+                    file.getParentFile().mkdirs();
+                }
+                try (Writer w = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+                    w.write(report.getJSON().toString(2));
+                }
+                log.info(String.format("Report written to %s", file.getAbsolutePath()));
+
+            } finally {
+                component.stop();
+            }
+
+        }
+    }
+
+}
@@ -0,0 +1,114 @@
+package net.resthub.loadtest;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * LoadTestConfig: database size, workload mix and duration. Values are
+ * set from key=value arguments, i.e. threads=32 rows=100000.
+ * @author valdo
+ */
+@Getter
+@Setter
+@ToString
+public class LoadTestConfig {
+
+    /**
+     * Server port.
+     */
+    private int port = 18080;
+
+    /**
+     * Number of generated tables and rows in each.
+     */
+    private int tables = 4;
+    private int rows = 10000;
+
+    /**
+     * Distinct category values: each category is a separate query
+     * (literal) or parameter value (parameterized table).
+     */
+    private int categories = 20;
+
+    /**
+     * Table cache time in seconds and hit count.
+     */
+    private int cacheTime = 60;
+    private int hitCount = 0;
+
+    /**
+     * Concurrent clients.
+     */
+    private int threads = 16;
+
+    private int warmupSeconds = 10;
+    private int durationSeconds = 60;
+
+    private int perPage = 100;
+
+    /**
+     * Operation weights.
+     */
+    private int createWeight = 5;
+    private int dataWeight = 70;
+    private int countWeight = 15;
+    private int lobWeight = 10;
+
+    /**
+     * Access skew: queries and pages are picked as n * r^skew, 1 is uniform.
+     */
+    private double skew = 3.0;
+
+    private long seed = 42L;
+
+    /**
+     * JSON report file.
+     */
+    private String report = "target/loadtest-report.json";
+
+    public static LoadTestConfig parse(String... args) {
+        LoadTestConfig cfg = new LoadTestConfig();
+        for (String arg: args) {
+            int i = arg.indexOf('=');
+            if (i < 1) {
+                throw new IllegalArgumentException(String.format("Expected key=value, found %s", arg));
+            }
+            cfg.set(arg.substring(0, i).trim(), arg.substring(i + 1).trim());
+        }
+        return cfg;
+    }
+
+    public void set(String key, String value) {
+        switch (key) {
+            case "port": port = Integer.parseInt(value); break;
+            case "tables": tables = Integer.parseInt(value); break;
+            case "rows": rows = Integer.parseInt(value); break;
+            case "categories": categories = Integer.parseInt(value); break;
+            case "cacheTime": cacheTime = Integer.parseInt(value); break;
+            case "hitCount": hitCount = Integer.parseInt(value); break;
+            case "threads": threads = Integer.parseInt(value); break;
+            case "warmupSeconds": warmupSeconds = Integer.parseInt(value); break;
+            case "durationSeconds": durationSeconds = Integer.parseInt(value); break;
+            case "perPage": perPage = Integer.parseInt(value); break;
+            case "createWeight": createWeight = Integer.parseInt(value); break;
+            case "dataWeight": dataWeight = Integer.parseInt(value); break;
+            case "countWeight": countWeight = Integer.parseInt(value); break;
+            case "lobWeight": lobWeight = Integer.parseInt(value); break;
+            case "skew": skew = Double.parseDouble(value); break;
+            case "seed": seed = Long.parseLong(value); break;
+            case "report": report = value; break;
+            default:
+                throw new IllegalArgumentException(String.format("Unknown load test option %s", key));
+        }
+    }
+
+    /**
+     * Full pages of a single category query.
+     * @return
+     */
+    public int getPages() {
+        return Math.max(1, rows / categories / perPage);
+    }
+
+}
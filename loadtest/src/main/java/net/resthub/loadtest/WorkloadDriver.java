@@ -0,0 +1,259 @@
+package net.resthub.loadtest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j;
+
+import org.json.JSONObject;
+
+/**
+ * WorkloadDriver: concurrent HTTP clients replaying a weighted mix of
+ * query registrations, data pages, counts and LOB requests. Queries and
+ * pages are picked with a skew towards the first ones so that the cache
+ * gets a realistic mix of hot and cold elements. Each client has its
+ * own seeded random, runs with the same configuration replay the same
+ * request sequences.
+ * @author valdo
+ */
+@Log4j
+public class WorkloadDriver {
+
+    public enum Operation {
+        CREATE,
+        DATA,
+        COUNT,
+        LOB
+    }
+
+    private static final Pattern CACHE_FLAG = Pattern.compile("cache;[^,]*desc=\"(\\w+)\"");
+
+    private final LoadTestConfig cfg;
+    private final String baseUrl;
+    private final List<Target> targets = new ArrayList<>();
+    private final ConcurrentMap<String, String> ids = new ConcurrentHashMap<>();
+    private final AtomicInteger runs = new AtomicInteger();
+
+    public WorkloadDriver(LoadTestConfig cfg, String baseUrl) {
+        this.cfg = cfg;
+        this.baseUrl = baseUrl;
+        for (int t = 1; t <= cfg.getTables(); t++) {
+            for (int c = 0; c < cfg.getCategories(); c++) {
+                targets.add(new Target(String.format("select * from %s.%s d where d.CATEGORY = %d",
+                        GeneratedTableFactory.NAMESPACE, GeneratedTableFactory.getDataTable(t), c), ""));
+                targets.add(new Target(String.format("select * from %s.%s c",
+                        GeneratedTableFactory.NAMESPACE, GeneratedTableFactory.getCategoryTable(t)), "?c.category=" + c));
+            }
+        }
+        Collections.shuffle(targets, new Random(cfg.getSeed()));
+    }
+
+    /**
+     * Register all queries.
+     * @throws IOException
+     */
+    public void prepare() throws IOException {
+        for (Target t: targets) {
+            register(t);
+        }
+        log.info(String.format("%d queries registered for %d targets", ids.size(), targets.size()));
+    }
+
+    /**
+     * Run the workload.
+     * @param duration milliseconds
+     * @return report
+     * @throws Exception
+     */
+    public WorkloadReport run(long duration) throws Exception {
+        int run = runs.getAndIncrement();
+        ExecutorService executor = Executors.newFixedThreadPool(cfg.getThreads());
+        try {
+            long start = System.currentTimeMillis();
+            long deadline = start + duration;
+
+            List<Future<WorkloadReport>> futures = new ArrayList<>();
+            for (int i = 0; i < cfg.getThreads(); i++) {
+                long seed = cfg.getSeed() + (long) run * cfg.getThreads() + i;
+                futures.add(executor.submit(new Client(new Random(seed), deadline)));
+            }
+
+            List<WorkloadReport> parts = new ArrayList<>();
+            for (Future<WorkloadReport> f: futures) {
+                parts.add(f.get());
+            }
+
+            return new WorkloadReport(System.currentTimeMillis() - start, parts);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public JSONObject getServerCache() throws Exception {
+        Result r = request("GET", "/cache", null);
+        return r.status == HttpURLConnection.HTTP_OK ? new JSONObject(r.body) : null;
+    }
+
+    private String register(Target t) throws IOException {
+        Result r = request("POST", "/query", t.sql);
+        if (r.status != HttpURLConnection.HTTP_OK) {
+            throw new IOException(String.format("Query %s not registered (%d): %s", t.sql, r.status, r.body));
+        }
+        String id = r.body.trim();
+        ids.put(t.sql, id);
+        return id;
+    }
+
+    private Result request(String method, String path, String body) throws IOException {
+        HttpURLConnection con = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        con.setRequestMethod(method);
+        if (body != null) {
+            con.setDoOutput(true);
+            con.setRequestProperty("Content-Type", "text/plain");
+            try (OutputStream out = con.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        Result r = new Result();
+        r.status = con.getResponseCode();
+        try (InputStream in = r.status < HttpURLConnection.HTTP_BAD_REQUEST ? con.getInputStream() : con.getErrorStream()) {
+            if (in != null) {
+                ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                byte[] buf = new byte[8192];
+                int n;
+                while ((n = in.read(buf)) != -1) {
+                    bos.write(buf, 0, n);
+                }
+                r.body = new String(bos.toByteArray(), StandardCharsets.UTF_8);
+            }
+        }
+
+        String timing = con.getHeaderField("Server-Timing");
+        if (timing != null) {
+            Matcher m = CACHE_FLAG.matcher(timing);
+            if (m.find()) {
+                r.cacheFlag = m.group(1);
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Skewed pick from 0 to n - 1.
+     */
+    private int pick(Random random, int n) {
+        return Math.min(n - 1, (int) (n * Math.pow(random.nextDouble(), cfg.getSkew())));
+    }
+
+    private Operation pick(Random random) {
+        int total = cfg.getCreateWeight() + cfg.getDataWeight() + cfg.getCountWeight() + cfg.getLobWeight();
+        int r = random.nextInt(total);
+        if ((r -= cfg.getCreateWeight()) < 0) {
+            return Operation.CREATE;
+        }
+        if ((r -= cfg.getDataWeight()) < 0) {
+            return Operation.DATA;
+        }
+        if ((r -= cfg.getCountWeight()) < 0) {
+            return Operation.COUNT;
+        }
+        return Operation.LOB;
+    }
+
+    /**
+     * Query with parameters.
+     */
+    @RequiredArgsConstructor
+    private static class Target {
+
+        private final String sql;
+        private final String parameters;
+
+    }
+
+    private static class Result {
+
+        private int status;
+        private String body;
+        private String cacheFlag;
+
+    }
+
+    @RequiredArgsConstructor
+    private class Client implements Callable<WorkloadReport> {
+
+        private final Random random;
+        private final long deadline;
+
+        @Override
+        public WorkloadReport call() throws Exception {
+            WorkloadReport report = new WorkloadReport(0);
+            while (System.currentTimeMillis() < deadline) {
+                Operation op = pick(random);
+                Target t = targets.get(pick(random, targets.size()));
+                int page = 1 + pick(random, cfg.getPages());
+
+                String path;
+                switch (op) {
+                    case CREATE:
+                        path = null;
+                        break;
+                    case DATA:
+                        path = String.format("/page/%d/%d/data", cfg.getPerPage(), page);
+                        break;
+                    case COUNT:
+                        path = "/count";
+                        break;
+                    default:
+                        int col = random.nextBoolean() ? H2Database.NOTE_COLUMN : H2Database.IMAGE_COLUMN;
+                        path = String.format("/page/%d/%d/%d/%d/lob", cfg.getPerPage(), page, random.nextInt(cfg.getPerPage()), col);
+                }
+
+                long start = System.nanoTime();
+                boolean error = false;
+                String cacheFlag = null;
+                try {
+                    if (path == null) {
+                        register(t);
+                    } else {
+                        Result r = request("GET", "/query/" + ids.get(t.sql) + path + t.parameters, null);
+                        error = r.status != HttpURLConnection.HTTP_OK;
+                        cacheFlag = r.cacheFlag;
+                        if (error && log.isDebugEnabled()) {
+                            log.debug(String.format("%s %s: %d %s", op, t.sql, r.status, r.body));
+                        }
+                    }
+                } catch (IOException ex) {
+                    error = true;
+                    if (log.isDebugEnabled()) {
+                        log.debug(String.format("%s %s: %s", op, t.sql, ex.getMessage()));
+                    }
+                }
+                report.record(op, System.nanoTime() - start, error, cacheFlag);
+            }
+            return report;
+        }
+
+    }
+
+}
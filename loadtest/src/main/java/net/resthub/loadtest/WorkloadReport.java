@@ -0,0 +1,144 @@
+package net.resthub.loadtest;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.Getter;
+import lombok.Setter;
+import net.resthub.server.query.LatencyHistogram;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * WorkloadReport: throughput, latency percentiles and errors per
+ * operation and the cache hit ratio as reported by the server in
+ * the Server-Timing header.
+ * @author valdo
+ */
+@Getter
+public class WorkloadReport {
+
+    private final long elapsed;
+    private final Map<WorkloadDriver.Operation, LatencyHistogram> latency = new EnumMap<>(WorkloadDriver.Operation.class);
+    private final Map<WorkloadDriver.Operation, AtomicLong> errors = new EnumMap<>(WorkloadDriver.Operation.class);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * Server /cache statistics at the end of the run.
+     */
+    @Setter
+    private JSONObject serverCache;
+
+    public WorkloadReport(long elapsed) {
+        this.elapsed = elapsed;
+        for (WorkloadDriver.Operation op: WorkloadDriver.Operation.values()) {
+            latency.put(op, new LatencyHistogram());
+            errors.put(op, new AtomicLong());
+        }
+    }
+
+    public WorkloadReport(long elapsed, Iterable<WorkloadReport> parts) {
+        this(elapsed);
+        for (WorkloadReport r: parts) {
+            for (WorkloadDriver.Operation op: WorkloadDriver.Operation.values()) {
+                latency.get(op).add(r.latency.get(op));
+                errors.get(op).addAndGet(r.errors.get(op).get());
+            }
+            hits.addAndGet(r.hits.get());
+            misses.addAndGet(r.misses.get());
+            coalesced.addAndGet(r.coalesced.get());
+        }
+    }
+
+    public void record(WorkloadDriver.Operation op, long nanos, boolean error, String cacheFlag) {
+        latency.get(op).record(nanos);
+        if (error) {
+            errors.get(op).incrementAndGet();
+        }
+        if (cacheFlag != null) {
+            switch (cacheFlag) {
+                case "hit":
+                    hits.incrementAndGet();
+                    break;
+                case "miss":
+                    misses.incrementAndGet();
+                    break;
+                case "coalesced":
+                    coalesced.incrementAndGet();
+                    break;
+            }
+        }
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (LatencyHistogram h: latency.values()) {
+            count += h.getCount();
+        }
+        return count;
+    }
+
+    public double getThroughput() {
+        return elapsed == 0 ? 0.0 : getCount() * 1000.0 / elapsed;
+    }
+
+    /**
+     * Requests served from cache, coalesced requests count as hits.
+     * @return ratio or 0 if no cacheable requests were made
+     */
+    public double getHitRatio() {
+        long total = hits.get() + misses.get() + coalesced.get();
+        return total == 0 ? 0.0 : (double) (hits.get() + coalesced.get()) / total;
+    }
+
+    public JSONObject getJSON() throws JSONException {
+        JSONObject ret = new JSONObject();
+        ret.put("elapsed", elapsed);
+        ret.put("requests", getCount());
+        ret.put("throughput", getThroughput());
+
+        JSONObject ops = new JSONObject();
+        for (WorkloadDriver.Operation op: WorkloadDriver.Operation.values()) {
+            LatencyHistogram h = latency.get(op);
+            JSONObject o = h.getJSON();
+            o.put("throughput", elapsed == 0 ? 0.0 : h.getCount() * 1000.0 / elapsed);
+            o.put("errors", errors.get(op).get());
+            ops.put(op.name().toLowerCase(Locale.ENGLISH), o);
+        }
+        ret.put("operations", ops);
+
+        JSONObject cache = new JSONObject();
+        cache.put("hits", hits.get());
+        cache.put("misses", misses.get());
+        cache.put("coalesced", coalesced.get());
+        cache.put("hitRatio", getHitRatio());
+        ret.put("cache", cache);
+
+        if (serverCache != null) {
+            ret.put("server", serverCache);
+        }
+        return ret;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ENGLISH, "%d requests in %.1f s, %.1f req/s%n", getCount(), elapsed / 1000.0, getThroughput()));
+        sb.append(String.format(Locale.ENGLISH, "%-8s %10s %8s %10s %10s %10s %10s%n", "op", "count", "errors", "mean ms", "p50 ms", "p95 ms", "p99 ms"));
+        for (WorkloadDriver.Operation op: WorkloadDriver.Operation.values()) {
+            LatencyHistogram h = latency.get(op);
+            sb.append(String.format(Locale.ENGLISH, "%-8s %10d %8d %10.2f %10.2f %10.2f %10.2f%n",
+                    op.name().toLowerCase(Locale.ENGLISH), h.getCount(), errors.get(op).get(),
+                    h.getMean() / 1e6, h.getPercentile(0.5) / 1e6, h.getPercentile(0.95) / 1e6, h.getPercentile(0.99) / 1e6));
+        }
+        sb.append(String.format(Locale.ENGLISH, "cache: %d hits, %d misses, %d coalesced, hit ratio %.3f%n",
+                hits.get(), misses.get(), coalesced.get(), getHitRatio()));
+        return sb.toString();
+    }
+
+}
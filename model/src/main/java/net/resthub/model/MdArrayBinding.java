@@ -0,0 +1,20 @@
+package net.resthub.model;
+
+/**
+ * MdArrayBinding: how array parameter values are bound into the IN list.
+ * @author valdo
+ */
+public enum MdArrayBinding {
+
+    /**
+     * Bind variable per value: SQL text differs for each array length.
+     */
+    EXPAND,
+    
+    /**
+     * Values are padded (last value repeated) up to the next power of two
+     * so that only a few SQL texts are generated.
+     */
+    PAD
+    
+}
@@ -9,6 +9,7 @@ import javax.persistence.FetchType;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
+import javax.persistence.Transient;
 import javax.persistence.UniqueConstraint;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlTransient;
@@ -48,4 +49,12 @@ public class MdParameter extends MdEntity {
     @XmlElement(name = "ARRAY_TYPE")
     private Boolean array;
     
+    /**
+     * Array binding strategy, server default if not set. Set by the XML
+     * table definitions only, not mapped to the HUB_PARAMETER table.
+     */
+    @Transient
+    @XmlElement(name = "ARRAY_BINDING")
+    private MdArrayBinding arrayBinding;
+    
 }
@@ -13,18 +13,24 @@ import net.resthub.ConnectionFactory;
 import net.resthub.TableFactory;
 import net.resthub.server.app.BlacklistTable;
 import net.resthub.server.app.BlacklistTables;
+import net.resthub.server.app.Bulkheads;
 import net.resthub.server.app.Cache;
 import net.resthub.server.app.Queries;
 import net.resthub.server.app.Query;
 import net.resthub.server.app.Count;
 import net.resthub.server.app.Data;
 import net.resthub.server.app.Lob;
+import net.resthub.server.app.Lobs;
+import net.resthub.server.app.Metrics;
 import net.resthub.server.app.Table;
 import net.resthub.server.app.Tables;
 import net.resthub.server.factory.CacheFactory;
+import net.resthub.server.factory.QueryFactory;
 import net.resthub.server.factory.MetadataFactory;
 import net.resthub.server.factory.MetadataFactoryIf;
 import net.resthub.server.factory.InjectorJobFactory;
+import net.resthub.server.cache.PrefetchScheduler;
+import net.resthub.server.cache.RefreshScheduler;
 import net.resthub.server.factory.ResourceFactory;
 
 import org.quartz.Scheduler;
@@ -90,7 +96,10 @@ public class ServerApp extends BaseApp {
     public synchronized void stop() throws Exception {
         super.stop();
         getInjector().getInstance(Scheduler.class).shutdown();
+        getInjector().getInstance(RefreshScheduler.class).close();
+        getInjector().getInstance(PrefetchScheduler.class).close();
         getInjector().getInstance(CacheFactory.class).close();
+        getInjector().getInstance(QueryFactory.class).close();
         getInjector().getInstance(TableFactory.class).close();
     }
     
@@ -122,6 +131,13 @@ public class ServerApp extends BaseApp {
         
         // GET, DELETE
         router.attach("/table/{tableNs}/{tableName}/cache", Cache.class);
+        
+        // GET
+        router.attach("/cache", Cache.class);
+
+        // GET
+        router.attach("/bulkheads", Bulkheads.class);
+        router.attach("/metrics", Metrics.class);
 
         // GET
         router.attach("/queries", Queries.class);
@@ -140,6 +156,10 @@ public class ServerApp extends BaseApp {
         router.attach("/query/{queryId}/page/{perPage}/{page}/data", Data.class);
         router.attach("/query/{queryId}/{row}/{col}/lob", Lob.class);
         router.attach("/query/{queryId}/page/{perPage}/{page}/{row}/{col}/lob", Lob.class);
+        router.attach("/query/{queryId}/lobs", Lobs.class);
+        router.attach("/query/{queryId}/{col}/lobs", Lobs.class);
+        router.attach("/query/{queryId}/page/{perPage}/{page}/lobs", Lobs.class);
+        router.attach("/query/{queryId}/page/{perPage}/{page}/{col}/lobs", Lobs.class);
         
         // GET, DELETE
         router.attach("/query/{queryId}/cache", Cache.class);
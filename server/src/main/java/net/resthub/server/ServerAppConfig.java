@@ -10,7 +10,11 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 import lombok.extern.log4j.Log4j;
+import net.resthub.model.MdArrayBinding;
+import net.resthub.server.query.QueryMap;
+import net.resthub.server.table.TableId;
 import net.sf.ehcache.util.concurrent.ConcurrentHashMap;
 import org.restlet.data.Reference;
 
@@ -22,9 +26,240 @@ import org.restlet.data.Reference;
 @Getter
 public class ServerAppConfig {
 
+    public static final long DEFAULT_LOB_CACHE_LIMIT = 1024 * 1024;
+    
     private final List<PatternPair> refRewritePats = new ArrayList<>();
     private final Map<Reference, Reference> refCache = new ConcurrentHashMap<>();
     
+    /**
+     * LOBs up to this size (bytes or characters) are read into memory and cached,
+     * larger ones are streamed from the database on each request.
+     */
+    @Setter
+    private long lobCacheLimit = DEFAULT_LOB_CACHE_LIMIT;
+    
+    /**
+     * Off-heap cache store size in bytes, 0 to keep cached values on heap.
+     * Requires -XX:MaxDirectMemorySize to be large enough.
+     */
+    @Setter
+    private long offHeapCacheSize = 0;
+    
+    /**
+     * Query store file to keep registered queries across restarts, 
+     * null to keep queries in memory only.
+     */
+    @Setter
+    private String queryStorePath = null;
+    
+    /**
+     * Max number of registered queries, least recently used are removed.
+     */
+    @Setter
+    private int maxQueries = QueryMap.DEFAULT_CAPACITY;
+    
+    /**
+     * Directory to keep cached results across restarts, null to disable.
+     */
+    @Setter
+    private String resultStorePath = null;
+    
+    /**
+     * Number of threads refreshing hot cache elements ahead of expiration.
+     */
+    @Setter
+    private int refreshThreads = 2;
+    
+    /**
+     * Max number of refreshes per second per connection.
+     */
+    @Setter
+    private double refreshBudget = 5.0;
+    
+    /**
+     * Accesses expected within the next cache period (per second of query 
+     * load time) required to refresh the element ahead of expiration.
+     */
+    @Setter
+    private double refreshMinHits = 2.0;
+    
+    /**
+     * Number of pages to load into cache ahead of sequential page requests,
+     * 0 to disable.
+     */
+    @Setter
+    private int prefetchPages = 1;
+    
+    /**
+     * Consecutive page requests of the same query and parameters to
+     * consider the access sequential.
+     */
+    @Setter
+    private int prefetchSequence = 2;
+    
+    /**
+     * Number of threads prefetching pages.
+     */
+    @Setter
+    private int prefetchThreads = 2;
+    
+    /**
+     * Max number of prefetched pages per second per connection.
+     */
+    @Setter
+    private double prefetchBudget = 10.0;
+    
+    /**
+     * Max concurrent database requests per connection if not set 
+     * explicitly, 0 for unlimited.
+     */
+    @Setter
+    private int defaultConnectionLimit = 0;
+    
+    /**
+     * Max time in milliseconds to wait for a saturated bulkhead.
+     */
+    @Setter
+    private long bulkheadTimeout = 5000;
+    
+    /**
+     * Retry-After seconds sent with requests rejected by bulkheads.
+     */
+    @Setter
+    private int bulkheadRetryAfter = 5;
+    
+    private final Map<String, Integer> connectionLimits = new ConcurrentHashMap<>();
+    private final Map<TableId, Integer> tableLimits = new ConcurrentHashMap<>();
+    
+    /**
+     * Set max concurrent database requests of the connection.
+     * @param connectionName
+     * @param limit max requests, 0 for unlimited
+     */
+    public void setConnectionLimit(String connectionName, int limit) {
+        connectionLimits.put(connectionName, limit);
+    }
+    
+    public int getConnectionLimit(String connectionName) {
+        Integer limit = connectionLimits.get(connectionName);
+        return limit == null ? defaultConnectionLimit : limit;
+    }
+    
+    /**
+     * Set max concurrent database requests of queries using the table.
+     * @param id table id
+     * @param limit max requests, 0 for unlimited
+     */
+    public void setTableLimit(TableId id, int limit) {
+        tableLimits.put(id, limit);
+    }
+    
+    public int getTableLimit(TableId id) {
+        Integer limit = tableLimits.get(id);
+        return limit == null ? 0 : limit;
+    }
+    
+    /**
+     * Load the first page and count of cacheable queries into cache as soon
+     * as they are registered, unless set for the table.
+     */
+    @Setter
+    private boolean primeQueries = false;
+    
+    /**
+     * Page size of the primed first page, 0 to prime the whole result.
+     */
+    @Setter
+    private int primePerPage = 10;
+    
+    private final Map<TableId, Boolean> primeTables = new ConcurrentHashMap<>();
+    
+    /**
+     * Set priming of queries using the table.
+     * @param id table id
+     * @param prime 
+     */
+    public void setPrimeTable(TableId id, boolean prime) {
+        primeTables.put(id, prime);
+    }
+    
+    public boolean isPrimeTable(TableId id) {
+        Boolean prime = primeTables.get(id);
+        return prime == null ? primeQueries : prime;
+    }
+    
+    /**
+     * Reject queries exceeding the cost ceiling at registration,
+     * otherwise they are throttled by the expensive query bulkhead.
+     */
+    @Setter
+    private boolean rejectExpensiveQueries = true;
+    
+    /**
+     * Max concurrent database requests of expensive queries per connection.
+     */
+    @Setter
+    private int expensiveQueryLimit = 1;
+    
+    private final Map<String, Long> costCeilings = new ConcurrentHashMap<>();
+    
+    /**
+     * Set estimated cost ceiling of queries using namespace tables.
+     * @param namespace
+     * @param ceiling
+     */
+    public void setCostCeiling(String namespace, long ceiling) {
+        costCeilings.put(namespace, ceiling);
+    }
+    
+    /**
+     * Set estimated cost ceiling of queries using the table, overrides
+     * the namespace ceiling.
+     * @param id
+     * @param ceiling
+     */
+    public void setCostCeiling(TableId id, long ceiling) {
+        costCeilings.put(id.toString(), ceiling);
+    }
+    
+    /**
+     * Cost ceiling of the table.
+     * @param id
+     * @return table or namespace ceiling, null if not set
+     */
+    public Long getCostCeiling(TableId id) {
+        Long ceiling = costCeilings.get(id.toString());
+        return ceiling == null ? costCeilings.get(id.getNamespace()) : ceiling;
+    }
+    
+    /**
+     * Number of queries with the most requests exposed with per query 
+     * series in /metrics, 0 to disable.
+     */
+    @Setter
+    private int metricsTopQueries = 20;
+    
+    /**
+     * Add Server-Timing header with per stage durations to query requests.
+     * Exposes internal timings to clients, disabled by default.
+     */
+    @Setter
+    private boolean serverTiming = false;
+    
+    /**
+     * Array parameter binding of parameters that do not set their own,
+     * set PAD to keep the number of SQL texts of array parameters low.
+     */
+    @Setter
+    private MdArrayBinding arrayBinding = MdArrayBinding.EXPAND;
+    
+    /**
+     * Lift literals of submitted queries into parameters so that queries
+     * differing in literals only share the same compiled query.
+     */
+    @Setter
+    private boolean parameterizeLiterals = false;
+    
     public void addReferenceRewrite(String searchStr, String replacement) {
         refRewritePats.add(new PatternPair(Pattern.compile(searchStr), replacement));
     }
@@ -0,0 +1,36 @@
+package net.resthub.server.app;
+
+import javax.inject.Inject;
+import net.resthub.server.exception.ServerErrorException;
+import net.resthub.server.factory.BulkheadFactory;
+import org.json.JSONException;
+import org.restlet.ext.json.JsonRepresentation;
+import org.restlet.resource.Get;
+import org.restlet.resource.Options;
+
+/**
+ * Bulkheads
+ * @author valdo
+ */
+public class Bulkheads extends ServerBaseResource {
+
+    @Inject
+    private BulkheadFactory bf;
+
+    @Options
+    public void define() {
+        addHeader("Access-Control-Allow-Methods", "GET, OPTIONS");
+        addHeader("Access-Control-Allow-Headers", "Content-Type");
+        addHeader("Content-Type", "application/json");
+    }
+    
+    @Get
+    public void describe() {
+        try {
+            getResponse().setEntity(new JsonRepresentation(bf.getJSON()));
+        } catch (JSONException ex) {
+            throw new ServerErrorException(ex);
+        }
+    }
+    
+}
@@ -1,13 +1,15 @@
 package net.resthub.server.app;
 
 import javax.inject.Inject;
-import net.sf.ehcache.statistics.StatisticsGateway;
+import net.resthub.server.cache.PrefetchScheduler;
+import net.resthub.server.cache.RefreshScheduler;
 import net.resthub.server.exception.ClientErrorException;
+import net.resthub.server.exception.ServerErrorException;
 import net.resthub.server.factory.CacheFactory;
 import net.resthub.server.query.Query;
 import net.resthub.server.table.ServerTable;
 import org.json.JSONArray;
-import org.json.JSONObject;
+import org.json.JSONException;
 import org.restlet.data.Status;
 import org.restlet.ext.json.JsonRepresentation;
 import org.restlet.resource.Delete;
@@ -24,6 +26,12 @@ public class Cache extends ServerBaseResource {
     @Inject
     private CacheFactory ccf;
     
+    @Inject
+    private RefreshScheduler refresher;
+    
+    @Inject
+    private PrefetchScheduler prefetcher;
+    
     private Query qmd;
     private ServerTable tmd;
 
@@ -45,13 +53,14 @@ public class Cache extends ServerBaseResource {
     public void describe() throws ResourceException {
         if (qmd != null) {
             
-            net.sf.ehcache.Cache c = ccf.get(qmd);
-            if (c == null) {
+            if (!ccf.exists(qmd)) {
                 throw new ClientErrorException(Status.CLIENT_ERROR_NOT_FOUND);
             }
-            StatisticsGateway st = c.getStatistics();
-            JSONObject ret = new JSONObject(st);
-            getResponse().setEntity(new JsonRepresentation(ret));
+            try {
+                getResponse().setEntity(new JsonRepresentation(ccf.getJSON(qmd)));
+            } catch (JSONException ex) {
+                throw new ServerErrorException(ex);
+            }
             
         } else
         if (tmd != null) {
@@ -66,6 +75,16 @@ public class Cache extends ServerBaseResource {
             }
             getResponse().setEntity(new JsonRepresentation(ret));
             
+        } else {
+            
+            try {
+                getResponse().setEntity(new JsonRepresentation(ccf.getJSON()
+                        .put("refresh", refresher.getJSON())
+                        .put("prefetch", prefetcher.getJSON())));
+            } catch (JSONException ex) {
+                throw new ServerErrorException(ex);
+            }
+            
         }
     }
     
@@ -73,11 +92,9 @@ public class Cache extends ServerBaseResource {
     public void remove() throws ResourceException {
         if (qmd != null) {
             
-            net.sf.ehcache.Cache c = ccf.get(qmd);
-            if (c == null) {
+            if (!ccf.clear(qmd)) {
                 throw new ClientErrorException(Status.CLIENT_ERROR_NOT_FOUND);
             }
-            c.removeAll();
             getResponse().setStatus(Status.SUCCESS_OK);
             
         } else
@@ -90,10 +107,7 @@ public class Cache extends ServerBaseResource {
             for (String qid: qf.getQueries(tmd.getId())) {
                 Query q = qf.getQuery(qid);
                 if (q.isCacheable()) {
-                    net.sf.ehcache.Cache c = ccf.get(q);
-                    if (c != null) {
-                        c.removeAll();
-                    }
+                    ccf.clear(q);
                 }
             }
             getResponse().setStatus(Status.SUCCESS_OK);
@@ -30,6 +30,14 @@ public class Count extends ServerBaseResource {
         this.handler = rf.createCountHandler(q, getQuery());
     }
     
+    @Override
+    protected void doRelease() throws ResourceException {
+        if (handler != null) {
+            recordTotalTime(handler.getQuery());
+        }
+        super.doRelease();
+    }
+    
     @Options
     public void define() {
         addHeader("Access-Control-Allow-Methods", "GET, OPTIONS");
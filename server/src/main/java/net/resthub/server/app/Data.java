@@ -6,17 +6,23 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
+import javax.inject.Inject;
 
 import net.resthub.exception.QueryException;
 import net.resthub.server.cache.CacheStats;
+import net.resthub.server.cache.CcData;
+import net.resthub.server.cache.PrefetchScheduler;
 import net.resthub.server.converter.CSVConverter;
 import net.resthub.server.converter.DataConverter;
 import net.resthub.server.converter.JSONConverter;
+import net.resthub.server.converter.NDJSONConverter;
+import net.resthub.server.converter.TimedRepresentation;
 import net.resthub.server.converter.XMLConverter;
 import net.resthub.server.exception.ClientErrorException;
 import net.resthub.server.exception.ServerErrorException;
 import net.resthub.server.exporter.DataExporter;
 import net.resthub.server.handler.DataHandler;
+import net.resthub.server.util.RequestTiming;
 
 import org.restlet.data.MediaType;
 import org.restlet.data.Status;
@@ -42,15 +48,26 @@ public class Data extends PagedData {
         CONVERTERS.put(MediaType.TEXT_XML, new XMLConverter());
         CONVERTERS.put(MediaType.TEXT_CSV, new CSVConverter());
         CONVERTERS.put(MediaType.TEXT_PLAIN, new CSVConverter());
+        CONVERTERS.put(NDJSONConverter.APPLICATION_NDJSON, new NDJSONConverter());
         SUPPORTED_TYPES = new ArrayList<>(CONVERTERS.keySet());
     }
     
+    @Inject
+    private PrefetchScheduler prefetcher;
+    
     private Boolean printColumns;
+    
+    /**
+     * Comma separated columns to return, null for all.
+     */
+    private String columns;
 
     @Override
     protected void doInit() throws ResourceException {
-        super.doInit();       
+        super.doInit();
+        
         this.printColumns = getParam(Boolean.class, "cols", false);
+        this.columns = getParam(String.class, "columns");
     }
     
     @Options
@@ -99,10 +116,15 @@ public class Data extends PagedData {
         }
         
         // Create query handler
+        long begin = RequestTiming.begin();
         DataHandler handler = rf.createDataHandler(query, getQuery());
         handler.setPerPage(perPage);
         handler.setPage(page);
         handler.setPrintColumns(printColumns);
+        if (columns != null) {
+            handler.setColumns(columns);
+        }
+        RequestTiming.end(RequestTiming.Stage.DECODE, begin);
         
         CacheStats stats = handler.getCacheStats();
         
@@ -115,9 +137,22 @@ public class Data extends PagedData {
         // Finally, return data
         try {
             
+            RequestTiming timing = RequestTiming.current();
             DataExporter dexp = qf.getExporter(handler);
-            getResponse().setEntity(CONVERTERS.get(preferredMediaType).convert(handler, getHostRef(), dexp.getValue()));
+            CcData data = dexp.getValue();
+            long start = System.nanoTime();
+            Representation entity = CONVERTERS.get(preferredMediaType).convert(handler, getHostRef(), data);
+            long elapsed = System.nanoTime() - start;
+            
+            // Conversion time is recorded once the entity is written, the 
+            // header can report only the part done before it is sent
+            getResponse().setEntity(new TimedRepresentation(entity, query.getStats().getConversionTime(), elapsed));
+            if (timing != null) {
+                timing.add(RequestTiming.Stage.CONVERT, elapsed);
+            }
             addExpiresHeader(stats);
+            
+            prefetcher.recordPage(handler, data == null || data.getValue() == null ? 0 : data.getValue().size());
 
         } catch (Exception ex) {
             if (ResourceException.class.isAssignableFrom(ex.getClass())) {
@@ -1,5 +1,7 @@
 package net.resthub.server.app;
 
+import java.util.List;
+import javax.inject.Inject;
 
 import net.resthub.model.MdColumn;
 import net.resthub.model.MdType;
@@ -7,12 +9,17 @@ import net.resthub.server.cache.CacheStats;
 import net.resthub.server.exception.ServerErrorException;
 
 import org.restlet.data.MediaType;
+import org.restlet.data.Range;
+import org.restlet.data.Status;
+import org.restlet.representation.Representation;
 import org.restlet.resource.Get;
 import org.restlet.resource.Options;
 import org.restlet.resource.ResourceException;
 
 import net.resthub.server.converter.LobConverter;
+import net.resthub.server.cache.CcLob;
 import net.resthub.server.exporter.LobExporter;
+import net.resthub.server.factory.BulkheadFactory;
 import net.resthub.server.handler.LobHandler;
 import static net.resthub.server.util.ClientAssert.badRequestIfNot;
 
@@ -22,6 +29,12 @@ import static net.resthub.server.util.ClientAssert.badRequestIfNot;
  */
 public class Lob extends PagedData {
     
+    @Inject
+    private LobConverter converter;
+    
+    @Inject
+    private BulkheadFactory bf;
+    
     private LobHandler handler;
 
     @Override
@@ -55,6 +68,7 @@ public class Lob extends PagedData {
         addHeader("Access-Control-Allow-Methods", "GET, OPTIONS");
         addHeader("Access-Control-Allow-Headers", "Content-Type");     
         addHeader("Content-Type", this.handler.getMediaType().toString());
+        addHeader("Accept-Ranges", "bytes");
     }
     
     @Get
@@ -71,7 +85,28 @@ public class Lob extends PagedData {
         try {
             
             LobExporter dexp = qf.getExporter(handler);
-            getResponse().setEntity(new LobConverter().convert(handler, dexp.getValue()));
+            Range range = null;
+            List<Range> ranges = getRequest().getRanges();
+            if (ranges != null && ranges.size() == 1) {
+                range = ranges.get(0);
+            }
+            
+            // Streamed LOB is read while writing the response: acquire ahead
+            CcLob value = dexp.getValue();
+            BulkheadFactory.Permit permit = value.isStreamed() ? bf.acquire(handler.getQuery()) : null;
+            Representation entity;
+            try {
+                entity = converter.convert(handler, value, range, permit);
+            } catch (Exception ex) {
+                if (permit != null) {
+                    permit.close();
+                }
+                throw ex;
+            }
+            getResponse().setEntity(entity);
+            if (entity.getRange() != null) {
+                getResponse().setStatus(Status.SUCCESS_PARTIAL_CONTENT);
+            }
             addExpiresHeader(stats);
 
         } catch (Exception ex) {
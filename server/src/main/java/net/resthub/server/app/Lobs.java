@@ -0,0 +1,70 @@
+package net.resthub.server.app;
+
+import static net.resthub.server.util.ClientAssert.badRequestIfNot;
+
+import javax.inject.Inject;
+
+import net.resthub.model.MdColumn;
+import net.resthub.model.MdType;
+import net.resthub.server.converter.LobsConverter;
+import net.resthub.server.factory.BulkheadFactory;
+import net.resthub.server.handler.LobHandler;
+
+import org.restlet.data.MediaType;
+import org.restlet.resource.Get;
+import org.restlet.resource.Options;
+import org.restlet.resource.ResourceException;
+
+/**
+ * Lobs: all LOB cells of the page (or of the single column) in one ZIP
+ * @author valdo
+ */
+public class Lobs extends PagedData {
+
+    @Inject
+    private LobsConverter converter;
+
+    @Inject
+    private BulkheadFactory bf;
+
+    private LobHandler handler;
+
+    private boolean warm;
+
+    @Override
+    protected void doInit() throws ResourceException {
+        super.doInit();
+
+        Integer col = getAttr(Integer.class, "col");
+        if (col != null) {
+            badRequestIfNot(col >= 0 && col < query.getColumns().size(), "Column attribute must be set to the valid column number");
+
+            MdColumn column = query.getColumns().get(col);
+            badRequestIfNot(column.getType() == MdType.BLOB || column.getType() == MdType.CLOB, "Column type must be BLOB or CLOB found %s", column.getType().name());
+        }
+
+        this.handler = rf.createLobHandler(query, getQuery());
+        handler.setPerPage(perPage);
+        handler.setPage(page);
+        handler.setColumn(col);
+
+        badRequestIfNot(!handler.getLobColumns().isEmpty(), "Query does not have BLOB or CLOB columns");
+
+        this.warm = getParam(Boolean.class, "warm", false);
+    }
+
+    @Options
+    public void define() {
+        addHeader("Access-Control-Allow-Methods", "GET, OPTIONS");
+        addHeader("Access-Control-Allow-Headers", "Content-Type");
+        addHeader("Content-Type", MediaType.APPLICATION_ZIP.toString());
+    }
+
+    @Get
+    public void data() throws ResourceException {
+        // LOBs are read while writing the response: acquire ahead
+        BulkheadFactory.Permit permit = bf.acquire(handler.getQuery());
+        getResponse().setEntity(converter.convert(handler, warm, permit));
+    }
+
+}
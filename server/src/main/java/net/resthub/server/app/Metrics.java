@@ -0,0 +1,32 @@
+package net.resthub.server.app;
+
+import javax.inject.Inject;
+import net.resthub.server.factory.MetricsFactory;
+import org.restlet.data.MediaType;
+import org.restlet.representation.StringRepresentation;
+import org.restlet.resource.Get;
+import org.restlet.resource.Options;
+
+/**
+ * Metrics
+ * @author valdo
+ */
+public class Metrics extends ServerBaseResource {
+
+    @Inject
+    private MetricsFactory mtf;
+
+    @Options
+    public void define() {
+        addHeader("Access-Control-Allow-Methods", "GET, OPTIONS");
+        addHeader("Access-Control-Allow-Headers", "Content-Type");
+        addHeader("Content-Type", MetricsFactory.CONTENT_TYPE);
+    }
+    
+    @Get
+    public void metrics() {
+        getResponse().setEntity(new StringRepresentation(mtf.getPrometheus(), 
+                MediaType.valueOf(MetricsFactory.CONTENT_TYPE)));
+    }
+    
+}
@@ -46,6 +46,12 @@ public abstract class PagedData extends ServerBaseResource {
         badRequestIfNot(page == null || page > 0, "Page number parameter must be > 0");
     }
     
+    @Override
+    protected void doRelease() throws ResourceException {
+        recordTotalTime(query);
+        super.doRelease();
+    }
+    
     protected void addExpiresHeader(final CacheStats cacheStats) {       
         if (query.isCacheable()){
             long cacheExpTime = cacheStats.getExpTime();
@@ -69,7 +69,7 @@ public class Query extends ServerBaseResource {
     public void remove() throws ResourceException {
         Boolean result = false;
         if (queryMd != null) {
-            result = qf.removeQuery(queryMd.getQid().getId());
+            result = qf.removeQuery(getAttr(String.class, "queryId"));
         }
         getResponse().setEntity(new StringRepresentation(result.toString()));
     }
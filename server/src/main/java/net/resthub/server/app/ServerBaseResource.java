@@ -1,13 +1,19 @@
 package net.resthub.server.app;
 
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
 import javax.inject.Inject;
 import lombok.extern.log4j.Log4j;
 import net.resthub.server.exception.ClientErrorException;
+import net.resthub.server.exception.ServiceUnavailableException;
 import net.resthub.server.factory.MetadataFactory;
 import net.resthub.server.factory.QueryFactory;
 import net.resthub.server.query.Query;
 import net.resthub.server.table.TableId;
 import net.resthub.server.table.ServerTable;
+import net.resthub.server.util.RequestTiming;
+import org.restlet.data.Form;
 import org.restlet.data.Status;
 import org.restlet.resource.ResourceException;
 
@@ -26,17 +32,77 @@ public abstract class ServerBaseResource extends BaseResource {
 
     protected boolean verbose = false;
     
+    private final long startTime = System.nanoTime();
+    
+    /**
+     * Literal values of the requested query, bound as its parameters.
+     */
+    private Map<String, String> literals = Collections.emptyMap();
+    
     @Override
     protected void doInit() throws ResourceException {
         super.doInit();
         this.verbose = getParam(Boolean.class, "v", false);
         
+        if (cfg.isServerTiming()) {
+            RequestTiming.start();
+        } else {
+            RequestTiming.clear();
+        }
+        
         if (log.isDebugEnabled()) {
             log.debug(String.format("Init app: %s, %s in %s", this.getClass().getName(), this.hashCode(), Thread.currentThread()));
         }
         
     }
     
+    /**
+     * Record end-to-end request time of the query.
+     * @param query
+     */
+    protected void recordTotalTime(Query query) {
+        if (query != null) {
+            query.getStats().getTotalTime().record(System.nanoTime() - startTime);
+        }
+    }
+    
+    @Override
+    protected void doRelease() throws ResourceException {
+        RequestTiming timing = RequestTiming.current();
+        if (timing != null) {
+            addHeader("Server-Timing", timing.getHeader());
+            RequestTiming.clear();
+        }
+        super.doRelease();
+    }
+    
+    @Override
+    protected void doCatch(Throwable throwable) {
+        Throwable t = throwable;
+        while (t != null && !(t instanceof ServiceUnavailableException)) {
+            t = t.getCause();
+        }
+        if (t != null) {
+            int retryAfter = ((ServiceUnavailableException) t).getRetryAfter();
+            getResponse().setRetryAfter(new Date(System.currentTimeMillis() + retryAfter * 1000L));
+        }
+        super.doCatch(throwable);
+    }
+    
+    /**
+     * Query parameters with literal values of the requested query, the latter
+     * take precedence.
+     * @return parameters form
+     */
+    @Override
+    public Form getQuery() {
+        Form form = super.getQuery();
+        for (Map.Entry<String, String> e: literals.entrySet()) {
+            form.set(e.getKey(), e.getValue(), true);
+        }
+        return form;
+    }
+    
     protected ServerTable getTableMd(boolean dieIfNotFound) throws ResourceException {
         String tableNs = super.getAttr(String.class, "tableNs");
         String tableName = super.getAttr(String.class, "tableName");
@@ -54,7 +120,10 @@ public abstract class ServerBaseResource extends BaseResource {
     protected Query getQueryMd(boolean dieIfNotFound) throws ResourceException {
         String queryId = super.getAttr(String.class, "queryId");
         if (queryId != null) {
+            long begin = RequestTiming.begin();
             Query q = qf.getQuery(queryId);
+            this.literals = qf.getLiterals(queryId);
+            RequestTiming.end(RequestTiming.Stage.LOOKUP, begin);
             if (q == null && dieIfNotFound) {
                 throw new ClientErrorException(Status.CLIENT_ERROR_NOT_FOUND, "query [%s] not found.", queryId);
             }
@@ -0,0 +1,33 @@
+package net.resthub.server.cache;
+
+import java.io.Serializable;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import net.resthub.server.handler.HandlerId;
+
+/**
+ * CacheKey: shared cache region element key
+ * @author valdo
+ */
+@Getter
+@RequiredArgsConstructor
+@EqualsAndHashCode
+@ToString
+public class CacheKey implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    
+    /**
+     * Query id
+     */
+    private final String queryId;
+    
+    /**
+     * Handler id within the query
+     */
+    private final HandlerId id;
+    
+}
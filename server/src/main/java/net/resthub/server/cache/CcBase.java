@@ -10,5 +10,13 @@ public abstract class CcBase<T> implements Serializable {
 
     private static final long serialVersionUID = 1L;
     private T value;
+    
+    /**
+     * Estimated value size in bytes.
+     * @return 
+     */
+    public long getWeight() {
+        return 16;
+    }
 	
 }
@@ -22,5 +22,16 @@ public class CcData extends CcBase<List<Object[]>> {
         }
         
     }
+    
+    @Override
+    public long getWeight() {
+        long weight = 16;
+        if (getValue() != null) {
+            for (Object[] row: getValue()) {
+                weight += 16 + row.length * 32;
+            }
+        }
+        return weight;
+    }
 	
 }
@@ -1,19 +1,31 @@
 package net.resthub.server.cache;
 
+import java.nio.charset.StandardCharsets;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter @Setter
 public class CcLob extends CcBase<byte[]> {
 
     private static final long serialVersionUID = 1L;
-        
-    public void setValue(Byte[] bts) {
-        byte[] bytes = new byte[bts.length];
-        for (int i = 0; i < bts.length; i++) {
-            bytes[i] = bts[i];
-        }
-        setValue(bytes);
-    }
+    
+    /**
+     * LOB length: bytes for BLOB, characters for CLOB.
+     */
+    private long length;
+    
+    /**
+     * LOB is too large to be held in memory and is streamed from the database.
+     */
+    private boolean streamed;
 
+    @Override
+    public long getWeight() {
+        return 16 + (getValue() == null ? 0 : getValue().length);
+    }
+    
     public void setValue(String str) {
-        setValue(str.getBytes());
+        setValue(str.getBytes(StandardCharsets.UTF_8));
     }
     
 }
@@ -0,0 +1,56 @@
+package net.resthub.server.cache;
+
+/**
+ * DecayingRate: exponentially decayed event counter. With the decay time
+ * constant tau the decayed count estimates the number of events expected
+ * within the next tau milliseconds under the current traffic.
+ * @author valdo
+ */
+public class DecayingRate {
+
+    private final double tau;
+    private double count = 0.0;
+    private long lastTime;
+
+    /**
+     * Constructor.
+     * @param tauMs decay time constant in milliseconds
+     * @param now current time in milliseconds
+     */
+    public DecayingRate(long tauMs, long now) {
+        this.tau = Math.max(1L, tauMs);
+        this.lastTime = now;
+    }
+
+    public synchronized void record(long now) {
+        decay(now);
+        count += 1.0;
+    }
+
+    /**
+     * Decayed count.
+     * @param now current time in milliseconds
+     * @return expected number of events within the next tau
+     */
+    public synchronized double getCount(long now) {
+        decay(now);
+        return count;
+    }
+
+    /**
+     * Rate.
+     * @param now current time in milliseconds
+     * @return events per second
+     */
+    public double getRate(long now) {
+        return getCount(now) * 1000.0 / tau;
+    }
+
+    private void decay(long now) {
+        if (now > lastTime) {
+            count *= Math.exp(-(now - lastTime) / tau);
+            lastTime = now;
+        }
+    }
+
+}
@@ -0,0 +1,111 @@
+package net.resthub.server.cache;
+
+/**
+ * FrequencySketch: Count-Min sketch of 4-bit counters to estimate access
+ * frequency of cache keys in a compact space. Counters are halved
+ * periodically (aging) so that the sketch reflects recent popularity.
+ * @author valdo
+ */
+public class FrequencySketch {
+
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long[] SEEDS = {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+
+    private final int width;
+    private final long[] table;
+    private final int sampleSize;
+    private int size = 0;
+
+    /**
+     * Constructor.
+     * @param capacity expected number of distinct keys
+     */
+    public FrequencySketch(int capacity) {
+        int w = 16;
+        while (w < capacity && w < (1 << 28)) {
+            w <<= 1;
+        }
+        this.width = w;
+        this.table = new long[(DEPTH * w) >>> 4];
+        this.sampleSize = 10 * w;
+    }
+
+    /**
+     * Estimated frequency of the key.
+     * @param key
+     * @return frequency between 0 and 15
+     */
+    public synchronized int frequency(Object key) {
+        int h = spread(key.hashCode());
+        int freq = MAX_COUNT;
+        for (int r = 0; r < DEPTH; r++) {
+            freq = Math.min(freq, get(position(h, r)));
+        }
+        return freq;
+    }
+
+    /**
+     * Record an access of the key.
+     * @param key
+     */
+    public synchronized void increment(Object key) {
+        int h = spread(key.hashCode());
+        boolean added = false;
+        for (int r = 0; r < DEPTH; r++) {
+            added |= increment(position(h, r));
+        }
+        if (added && ++size >= sampleSize) {
+            reset();
+        }
+    }
+
+    public synchronized int getSize() {
+        return size;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    private int position(int h, int row) {
+        long hash = (h + SEEDS[row]) * SEEDS[row];
+        hash += hash >>> 32;
+        return row * width + ((int) hash & (width - 1));
+    }
+
+    private int get(int p) {
+        return (int) ((table[p >>> 4] >>> ((p & 15) << 2)) & 0xfL);
+    }
+
+    private boolean increment(int p) {
+        int i = p >>> 4;
+        int shift = (p & 15) << 2;
+        long mask = 0xfL << shift;
+        if ((table[i] & mask) != mask) {
+            table[i] += 1L << shift;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Halve all counters.
+     */
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size = size >>> 1;
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+
+}
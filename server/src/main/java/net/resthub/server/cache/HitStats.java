@@ -0,0 +1,47 @@
+package net.resthub.server.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * HitStats: cache hit/miss counters
+ * @author valdo
+ */
+public class HitStats {
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public void record(boolean hit) {
+        if (hit) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public double getRatio() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    public JSONObject getJSON() throws JSONException {
+        JSONObject ret = new JSONObject();
+        ret.put("hits", getHits());
+        ret.put("misses", getMisses());
+        ret.put("ratio", getRatio());
+        return ret;
+    }
+
+}
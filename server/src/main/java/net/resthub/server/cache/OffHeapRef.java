@@ -0,0 +1,22 @@
+package net.resthub.server.cache;
+
+import java.io.Serializable;
+
+/**
+ * OffHeapRef: placeholder put into the cache instead of the value
+ * which is kept in the off-heap store.
+ * @author valdo
+ */
+public final class OffHeapRef implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    
+    public static final OffHeapRef INSTANCE = new OffHeapRef();
+    
+    private OffHeapRef() { }
+    
+    private Object readResolve() {
+        return INSTANCE;
+    }
+    
+}
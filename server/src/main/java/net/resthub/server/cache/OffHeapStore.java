@@ -0,0 +1,330 @@
+package net.resthub.server.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import lombok.extern.log4j.Log4j;
+
+/**
+ * OffHeapStore: keeps serialized cache values in direct ByteBuffer slabs
+ * outside of the GC managed heap. Slabs are split into fixed size blocks,
+ * a value occupies as many blocks as needed. Least recently used values
+ * are evicted when there are not enough free blocks and the eviction
+ * listener is notified.
+ * @author valdo
+ */
+@Log4j
+public class OffHeapStore {
+
+    public static final int DEFAULT_BLOCK_SIZE = 8 * 1024;
+    public static final int DEFAULT_SLAB_SIZE = 16 * 1024 * 1024;
+
+    private final int blockSize;
+    private final int blocksPerSlab;
+    private final int maxBlocks;
+    private final List<ByteBuffer> slabs = new ArrayList<>();
+
+    private int[] freeBlocks;
+    private int freeCount = 0;
+    private int allocatedBlocks = 0;
+
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Secondary index: entry keys by cache name.
+     */
+    private final Map<String, Set<Key>> names = new HashMap<>();
+
+    @Setter
+    private volatile EvictionListener evictionListener;
+
+    @Getter
+    private long hitCount = 0;
+
+    @Getter
+    private long missCount = 0;
+
+    @Getter
+    private long evictionCount = 0;
+
+    public OffHeapStore(long capacity) {
+        this(capacity, DEFAULT_SLAB_SIZE, DEFAULT_BLOCK_SIZE);
+    }
+
+    public OffHeapStore(long capacity, int slabSize, int blockSize) {
+        if (blockSize <= 0 || slabSize < blockSize) {
+            throw new IllegalArgumentException(String.format("Invalid slab (%d) and block (%d) sizes", slabSize, blockSize));
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid off-heap capacity (%d)", capacity));
+        }
+        if (capacity < slabSize) {
+            log.warn(String.format("Off-heap capacity %d is less than slab size, rounded up to %d", capacity, slabSize));
+            capacity = slabSize;
+        }
+        this.blockSize = blockSize;
+        this.blocksPerSlab = slabSize / blockSize;
+        this.maxBlocks = (int) Math.min(Integer.MAX_VALUE, (capacity / slabSize) * blocksPerSlab);
+        this.freeBlocks = new int[blocksPerSlab];
+    }
+
+    /**
+     * Store value. Value which does not fit into the store is not stored.
+     * @param name cache name
+     * @param id element id
+     * @param value value to store
+     * @return true if value was stored
+     */
+    public boolean put(String name, Object id, CcBase<?> value) {
+        List<Key> evicted = new ArrayList<>();
+        boolean stored = put(new Key(name, id), value, evicted);
+        
+        // Outside of the lock as the listener may call back
+        EvictionListener listener = evictionListener;
+        if (listener != null) {
+            for (Key k: evicted) {
+                listener.evicted(k.name, k.id);
+            }
+        }
+        
+        return stored;
+    }
+
+    private synchronized boolean put(Key key, CcBase<?> value, List<Key> evicted) {
+        release(removeEntry(key));
+
+        byte[] bytes;
+        try {
+            bytes = encode(value);
+        } catch (IOException ex) {
+            log.warn(String.format("Value of %s can not be serialized: %s", key, ex.getMessage()));
+            return false;
+        }
+
+        int n = (bytes.length + blockSize - 1) / blockSize;
+        if (n > maxBlocks) {
+            return false;
+        }
+
+        while (freeCount < n && allocatedBlocks + blocksPerSlab <= maxBlocks) {
+            allocateSlab();
+        }
+
+        Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+        while (freeCount < n && it.hasNext()) {
+            Map.Entry<Key, Entry> me = it.next();
+            it.remove();
+            unindex(me.getKey());
+            release(me.getValue());
+            evicted.add(me.getKey());
+            evictionCount++;
+        }
+
+        if (freeCount < n) {
+            return false;
+        }
+
+        int[] blocks = new int[n];
+        for (int i = 0; i < n; i++) {
+            blocks[i] = freeBlocks[--freeCount];
+            int off = i * blockSize;
+            ByteBuffer b = block(blocks[i]);
+            b.put(bytes, off, Math.min(blockSize, bytes.length - off));
+        }
+
+        entries.put(key, new Entry(blocks, bytes.length));
+        index(key);
+        return true;
+    }
+
+    /**
+     * Get stored value.
+     * @param name cache name
+     * @param id element id
+     * @return decoded value or null if not found
+     */
+    public synchronized CcBase<?> get(String name, Object id) {
+        Entry e = entries.get(new Key(name, id));
+        if (e == null) {
+            missCount++;
+            return null;
+        }
+
+        byte[] bytes = new byte[e.length];
+        for (int i = 0; i < e.blocks.length; i++) {
+            int off = i * blockSize;
+            block(e.blocks[i]).get(bytes, off, Math.min(blockSize, bytes.length - off));
+        }
+
+        try {
+            CcBase<?> value = decode(bytes);
+            hitCount++;
+            return value;
+        } catch (IOException | ClassNotFoundException ex) {
+            log.warn(String.format("Value of %s/%s can not be deserialized: %s", name, id, ex.getMessage()));
+            release(removeEntry(new Key(name, id)));
+            missCount++;
+            return null;
+        }
+    }
+
+    public synchronized boolean contains(String name, Object id) {
+        return entries.containsKey(new Key(name, id));
+    }
+
+    public synchronized void remove(String name, Object id) {
+        release(removeEntry(new Key(name, id)));
+    }
+
+    /**
+     * Remove all values of the cache.
+     * @param name cache name
+     */
+    public synchronized void removeAll(String name) {
+        Set<Key> keys = names.remove(name);
+        if (keys != null) {
+            for (Key key: keys) {
+                release(entries.remove(key));
+            }
+        }
+    }
+
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    public synchronized long getUsedBytes() {
+        return (long) (allocatedBlocks - freeCount) * blockSize;
+    }
+
+    public synchronized long getAllocatedBytes() {
+        return (long) allocatedBlocks * blockSize;
+    }
+
+    public long getCapacity() {
+        return (long) maxBlocks * blockSize;
+    }
+
+    private void allocateSlab() {
+        int first = allocatedBlocks;
+        slabs.add(ByteBuffer.allocateDirect(blocksPerSlab * blockSize));
+        allocatedBlocks += blocksPerSlab;
+
+        if (freeBlocks.length < allocatedBlocks) {
+            int[] fb = new int[allocatedBlocks];
+            System.arraycopy(freeBlocks, 0, fb, 0, freeCount);
+            freeBlocks = fb;
+        }
+
+        for (int i = allocatedBlocks - 1; i >= first; i--) {
+            freeBlocks[freeCount++] = i;
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("Off-heap slab %d allocated, total %d bytes", slabs.size(), getAllocatedBytes()));
+        }
+    }
+
+    private Entry removeEntry(Key key) {
+        Entry e = entries.remove(key);
+        if (e != null) {
+            unindex(key);
+        }
+        return e;
+    }
+
+    private void index(Key key) {
+        Set<Key> keys = names.get(key.name);
+        if (keys == null) {
+            keys = new HashSet<>();
+            names.put(key.name, keys);
+        }
+        keys.add(key);
+    }
+
+    private void unindex(Key key) {
+        Set<Key> keys = names.get(key.name);
+        if (keys != null) {
+            keys.remove(key);
+            if (keys.isEmpty()) {
+                names.remove(key.name);
+            }
+        }
+    }
+
+    private ByteBuffer block(int block) {
+        ByteBuffer b = slabs.get(block / blocksPerSlab).duplicate();
+        int pos = (block % blocksPerSlab) * blockSize;
+        b.limit(pos + blockSize);
+        b.position(pos);
+        return b;
+    }
+
+    private void release(Entry e) {
+        if (e != null) {
+            for (int b: e.blocks) {
+                freeBlocks[freeCount++] = b;
+            }
+        }
+    }
+
+    private static byte[] encode(Serializable value) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+            oos.writeObject(value);
+        }
+        return bos.toByteArray();
+    }
+
+    private static CcBase<?> decode(byte[] bytes) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (CcBase<?>) ois.readObject();
+        }
+    }
+
+    /**
+     * Notified of values evicted to make room for new ones.
+     */
+    public interface EvictionListener {
+
+        void evicted(String name, Object id);
+
+    }
+
+    @RequiredArgsConstructor
+    @EqualsAndHashCode
+    @ToString
+    private static class Key {
+
+        private final String name;
+        private final Object id;
+
+    }
+
+    @RequiredArgsConstructor
+    private static class Entry {
+
+        private final int[] blocks;
+        private final int length;
+
+    }
+
+}
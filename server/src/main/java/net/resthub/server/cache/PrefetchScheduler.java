@@ -0,0 +1,361 @@
+package net.resthub.server.cache;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import lombok.extern.log4j.Log4j;
+import net.resthub.server.ServerAppConfig;
+import net.resthub.server.exporter.Exporter;
+import net.resthub.server.factory.QueryFactory;
+import net.resthub.server.factory.ResourceFactory;
+import net.resthub.server.handler.CountHandler;
+import net.resthub.server.handler.DataHandler;
+import net.resthub.server.handler.Handler;
+import net.resthub.server.handler.HandlerId;
+import net.resthub.server.query.Query;
+import net.resthub.server.query.QueryParameter;
+import net.resthub.server.table.TableId;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.restlet.data.Form;
+import org.restlet.resource.ResourceException;
+
+/**
+ * PrefetchScheduler: loads the next pages of sequentially requested data
+ * into cache ahead of the client. Page sequences are tracked per query,
+ * parameters and page size. Once the configured number of consecutive
+ * pages is requested, each served page schedules the following ones.
+ * Prefetches of each connection are limited by the prefetch budget
+ * (pages per second).
+ *
+ * Prefetched page requested before it expires is a hit, otherwise it
+ * is wasted.
+ *
+ * Queries of priming tables have the first page and count loaded as soon
+ * as they are registered, so the first client request is a hit or joins
+ * the load in flight.
+ * @author valdo
+ */
+@Log4j
+@Singleton
+public class PrefetchScheduler implements AutoCloseable {
+
+    private static final long TICK_MS = 10;
+    private static final int WHEEL_SIZE = 64;
+    private static final int QUEUE_SIZE = 256;
+    private static final int MAX_SEQUENCES = 10000;
+    private static final long SEQUENCE_IDLE_MS = 10 * 60 * 1000;
+    private static final long SWEEP_MS = 1000;
+    private static final long LOADING = Long.MAX_VALUE;
+
+    @Inject
+    private QueryFactory qf;
+
+    @Inject
+    private ResourceFactory rf;
+
+    private final ServerAppConfig cfg;
+    private final TimingWheel<HandlerId> wheel;
+
+    /**
+     * Page sequences by sequence id.
+     */
+    private final ConcurrentMap<HandlerId, Sequence> sequences = new ConcurrentHashMap<>();
+
+    /**
+     * Prefetched pages not requested yet: element expiration time by handler id.
+     */
+    private final ConcurrentMap<HandlerId, Long> prefetched = new ConcurrentHashMap<>();
+
+    /**
+     * Prefetch budgets per connection.
+     */
+    private final ConcurrentMap<String, TokenBucket> budgets = new ConcurrentHashMap<>();
+
+    private final AtomicLong loaded = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong wasted = new AtomicLong();
+    private final AtomicLong cached = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong primed = new AtomicLong();
+
+    private volatile long lastSweep = System.currentTimeMillis();
+
+    @Inject
+    public PrefetchScheduler(ServerAppConfig cfg) {
+        this.cfg = cfg;
+        this.wheel = new TimingWheel<>("prefetch", TICK_MS, WHEEL_SIZE, cfg.getPrefetchThreads(), QUEUE_SIZE);
+    }
+
+    /**
+     * Record served page and schedule prefetch of the following ones if
+     * the access is sequential.
+     * @param handler
+     * @param rows number of rows served
+     */
+    public void recordPage(DataHandler handler, int rows) {
+        long now = System.currentTimeMillis();
+        if (prefetched.remove(handler.getId()) != null) {
+            hits.incrementAndGet();
+        }
+        sweep(now);
+
+        Integer page = handler.getPage();
+        Integer perPage = handler.getPerPage();
+        if (page == null || perPage == null) {
+            return;
+        }
+
+        if (cfg.getPrefetchPages() <= 0 || !handler.getQuery().isCacheable()) {
+            return;
+        }
+
+        HandlerId sid = handler.getSequenceId();
+        Sequence seq = sequences.get(sid);
+        if (seq == null) {
+            if (sequences.size() >= MAX_SEQUENCES) {
+                return;
+            }
+            seq = new Sequence();
+            Sequence prev = sequences.putIfAbsent(sid, seq);
+            if (prev != null) {
+                seq = prev;
+            }
+        }
+
+        // Not sequential yet or the last page
+        if (seq.next(page, now) < cfg.getPrefetchSequence() || rows < perPage) {
+            return;
+        }
+
+        for (int i = 1; i <= cfg.getPrefetchPages(); i++) {
+            schedule(handler, page + i);
+        }
+    }
+
+    private void schedule(DataHandler handler, int page) {
+        try {
+
+            DataHandler next = rf.createDataHandler(handler.getQuery(), new Form(handler.getQueryString()));
+            next.setPerPage(handler.getPerPage());
+            next.setPage(page);
+            next.setProjection(handler.getProjection());
+
+            HandlerId id = next.getId();
+            if (prefetched.containsKey(id) || wheel.isPending(id)) {
+                return;
+            }
+
+            wheel.schedule(id, 0, new PrefetchTask(next, true));
+
+            if (log.isDebugEnabled()) {
+                log.debug(String.format("Prefetch of %s page %d scheduled", handler.getQuery().getQid(), page));
+            }
+
+        } catch (RuntimeException ex) {
+            log.warn(String.format("Prefetch of %s page %d can not be scheduled: %s", handler.getQuery().getQid(), page, ex.getMessage()));
+        }
+    }
+
+    /**
+     * Load the first page and count of the just registered query if all its
+     * tables are set to prime. Queries with parameters to be provided by the
+     * client are skipped.
+     * @param query
+     * @param literals literal values of the query id
+     */
+    public void prime(Query query, Map<String, String> literals) {
+        if (query == null || !query.isCacheable()) {
+            return;
+        }
+        for (TableId tid: query.getTables()) {
+            if (!cfg.isPrimeTable(tid)) {
+                return;
+            }
+        }
+        
+        Form form = new Form();
+        for (QueryParameter p: query.getParameters()) {
+            String value = literals.get(p.getName());
+            if (value == null) {
+                return;
+            }
+            form.add(p.getName(), value);
+        }
+        
+        try {
+            
+            DataHandler data = rf.createDataHandler(query, form);
+            if (cfg.getPrimePerPage() > 0) {
+                data.setPerPage(cfg.getPrimePerPage());
+                data.setPage(1);
+            }
+            wheel.schedule(data.getId(), 0, new PrefetchTask(data, true));
+            
+            CountHandler count = rf.createCountHandler(query, form);
+            wheel.schedule(count.getId(), 0, new PrefetchTask(count, false));
+            
+            primed.incrementAndGet();
+            
+            if (log.isDebugEnabled()) {
+                log.debug(String.format("Priming of %s scheduled", query.getQid()));
+            }
+            
+        } catch (ResourceException ex) {
+            log.warn(String.format("Priming of %s can not be scheduled: %s", query.getQid(), ex.getMessage()));
+        }
+    }
+
+    private void sweep(long now) {
+        if (now - lastSweep < SWEEP_MS) {
+            return;
+        }
+        lastSweep = now;
+
+        for (Iterator<Map.Entry<HandlerId, Long>> it = prefetched.entrySet().iterator(); it.hasNext();) {
+            if (it.next().getValue() < now) {
+                it.remove();
+                wasted.incrementAndGet();
+            }
+        }
+
+        for (Iterator<Sequence> it = sequences.values().iterator(); it.hasNext();) {
+            if (it.next().lastAccess < now - SEQUENCE_IDLE_MS) {
+                it.remove();
+            }
+        }
+    }
+
+    private TokenBucket getBudget(String connectionName) {
+        TokenBucket b = budgets.get(connectionName);
+        if (b == null) {
+            double qps = cfg.getPrefetchBudget();
+            b = new TokenBucket(qps, qps, System.currentTimeMillis());
+            TokenBucket prev = budgets.putIfAbsent(connectionName, b);
+            if (prev != null) {
+                b = prev;
+            }
+        }
+        return b;
+    }
+
+    public JSONObject getJSON() throws JSONException {
+        long h = hits.get();
+        long w = wasted.get();
+        JSONObject ret = new JSONObject();
+        ret.put("sequences", sequences.size());
+        ret.put("pending", wheel.getPendingCount());
+        ret.put("scheduled", wheel.getScheduledCount());
+        ret.put("dropped", wheel.getDroppedCount());
+        ret.put("primed", primed.get());
+        ret.put("loaded", loaded.get());
+        ret.put("cached", cached.get());
+        ret.put("throttled", throttled.get());
+        ret.put("failed", failed.get());
+        ret.put("hits", h);
+        ret.put("wasted", w);
+        ret.put("hitRatio", h + w == 0 ? 0.0 : (double) h / (h + w));
+        return ret;
+    }
+
+    @Override
+    public void close() {
+        wheel.close();
+    }
+
+    /**
+     * Sequence of page requests.
+     */
+    private static class Sequence {
+
+        private int page = 0;
+        private int run = 0;
+        private volatile long lastAccess = 0L;
+
+        /**
+         * Record page request.
+         * @param p page number
+         * @param now
+         * @return number of consecutive pages requested
+         */
+        private synchronized int next(int p, long now) {
+            if (p == page + 1) {
+                run++;
+            } else if (p != page) {
+                run = 1;
+            }
+            page = p;
+            lastAccess = now;
+            return run;
+        }
+
+    }
+
+    /**
+     * Load of a single element unless it is in cache already.
+     */
+    private class PrefetchTask implements Runnable {
+
+        private final Handler<?,?> handler;
+        
+        /**
+         * Track as prefetched, i.e. for hits and waste.
+         */
+        private final boolean tracked;
+
+        public PrefetchTask(Handler<?,?> handler, boolean tracked) {
+            this.handler = handler;
+            this.tracked = tracked;
+        }
+
+        @Override
+        public void run() {
+            HandlerId id = handler.getId();
+            try {
+
+                if (handler.getCacheStats().getExpTime() != 0L) {
+                    cached.incrementAndGet();
+                    return;
+                }
+
+                if (!getBudget(handler.getQuery().getConnectionName()).tryAcquire(System.currentTimeMillis())) {
+                    throttled.incrementAndGet();
+                    return;
+                }
+
+                // Marked ahead so that concurrent request of the page is a hit
+                if (tracked) {
+                    prefetched.put(id, LOADING);
+                }
+                Exporter<?> dataExporter = qf.getExporter(handler);
+                dataExporter.refreshValue();
+                loaded.incrementAndGet();
+
+                long expTime = handler.getCacheStats().getExpTime();
+                if (!tracked) {
+                    return;
+                } else if (expTime == 0L) {
+                    // Not admitted to cache
+                    prefetched.remove(id);
+                } else {
+                    prefetched.replace(id, LOADING, expTime);
+                }
+
+            } catch (Exception ex) {
+                prefetched.remove(id);
+                failed.incrementAndGet();
+                log.warn(String.format("Error while prefetching %s: %s", id, ex.getMessage()));
+            }
+        }
+
+    }
+
+}
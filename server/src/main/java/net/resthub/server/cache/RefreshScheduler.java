@@ -0,0 +1,293 @@
+package net.resthub.server.cache;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import com.google.common.base.Predicate;
+import lombok.extern.log4j.Log4j;
+import net.resthub.server.ServerAppConfig;
+import net.resthub.server.exporter.Exporter;
+import net.resthub.server.factory.QueryFactory;
+import net.resthub.server.factory.ResourceFactory;
+import net.resthub.server.handler.CountHandler;
+import net.resthub.server.handler.DataHandler;
+import net.resthub.server.handler.Handler;
+import net.resthub.server.handler.HandlerId;
+import net.resthub.server.handler.LobHandler;
+import net.resthub.server.handler.PagedHandler;
+import net.resthub.server.query.Query;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.restlet.data.Form;
+
+/**
+ * RefreshScheduler: refreshes hot cache elements ahead of expiration.
+ * Refreshes are kept in a timing wheel keyed by handler id, so repeated
+ * puts of the same element replace the pending refresh.
+ *
+ * Element is refreshed only if the accesses expected within the next
+ * cache period (decayed access count with the cache time as the time
+ * constant) justify the load time of the query. Refreshes of each
+ * connection are limited by the refresh budget (queries per second).
+ *
+ * Pending refreshes keep only the request state and recreate the handler
+ * when fired. Refreshes of the removed query are cancelled.
+ * @author valdo
+ */
+@Log4j
+@Singleton
+public class RefreshScheduler implements AutoCloseable {
+
+    private static final long TICK_MS = 100;
+    private static final int WHEEL_SIZE = 512;
+    private static final int QUEUE_SIZE = 1024;
+
+    @Inject
+    private QueryFactory qf;
+
+    @Inject
+    private ResourceFactory rf;
+
+    private final ServerAppConfig cfg;
+    private final TimingWheel<HandlerId> wheel;
+
+    /**
+     * Access rates of scheduled elements.
+     */
+    private final ConcurrentMap<HandlerId, DecayingRate> rates = new ConcurrentHashMap<>();
+
+    /**
+     * Refresh budgets per connection.
+     */
+    private final ConcurrentMap<String, TokenBucket> budgets = new ConcurrentHashMap<>();
+
+    private final AtomicLong refreshed = new AtomicLong();
+    private final AtomicLong declined = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+
+    @Inject
+    public RefreshScheduler(ServerAppConfig cfg) {
+        this.cfg = cfg;
+        this.wheel = new TimingWheel<>("refresh", TICK_MS, WHEEL_SIZE, cfg.getRefreshThreads(), QUEUE_SIZE);
+    }
+
+    /**
+     * Schedule element refresh just before it expires, i.e. cache time less
+     * the time it takes to load it.
+     * @param handler
+     * @param expTime element expiration time as put into cache
+     */
+    public void schedule(Handler<?,?> handler, long expTime) {
+        Query q = handler.getQuery();
+        long now = System.currentTimeMillis();
+        if (!rates.containsKey(handler.getId())) {
+            DecayingRate rate = new DecayingRate(q.getCacheTimeInMilliseconds(), now);
+            rate.record(now);
+            rates.putIfAbsent(handler.getId(), rate);
+        }
+
+        long delay = q.getCacheTimeInMilliseconds() - q.getStats().getCacheTime();
+        wheel.schedule(handler.getId(), delay, new RefreshTask(handler, expTime));
+
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("Refresh of %s scheduled in %d ms", handler.getId(), delay));
+        }
+    }
+
+    /**
+     * Record element access. Only elements scheduled for refresh are tracked.
+     * @param handler
+     */
+    public void recordAccess(Handler<?,?> handler) {
+        DecayingRate rate = rates.get(handler.getId());
+        if (rate != null) {
+            rate.record(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Cancel pending refreshes of the query.
+     * @param queryId query id
+     */
+    public void cancel(final String queryId) {
+        List<HandlerId> ids = wheel.cancelAll(new Predicate<Runnable>() {
+
+            @Override
+            public boolean apply(Runnable task) {
+                return task instanceof RefreshTask && ((RefreshTask) task).queryId.equals(queryId);
+            }
+
+        });
+        for (HandlerId id: ids) {
+            rates.remove(id);
+        }
+
+        if (log.isDebugEnabled() && !ids.isEmpty()) {
+            log.debug(String.format("%d refreshes of %s cancelled", ids.size(), queryId));
+        }
+    }
+
+    private TokenBucket getBudget(String connectionName) {
+        TokenBucket b = budgets.get(connectionName);
+        if (b == null) {
+            double qps = cfg.getRefreshBudget();
+            b = new TokenBucket(qps, qps, System.currentTimeMillis());
+            TokenBucket prev = budgets.putIfAbsent(connectionName, b);
+            if (prev != null) {
+                b = prev;
+            }
+        }
+        return b;
+    }
+
+    public JSONObject getJSON() throws JSONException {
+        JSONObject ret = new JSONObject();
+        ret.put("pending", wheel.getPendingCount());
+        ret.put("scheduled", wheel.getScheduledCount());
+        ret.put("fired", wheel.getFiredCount());
+        ret.put("dropped", wheel.getDroppedCount());
+        ret.put("refreshed", refreshed.get());
+        ret.put("declined", declined.get());
+        ret.put("throttled", throttled.get());
+        return ret;
+    }
+
+    @Override
+    public void close() {
+        wheel.close();
+    }
+
+    /**
+     * Refresh of a single element: request state to recreate the handler
+     * and the expiration time to detect elements refreshed meanwhile.
+     */
+    private class RefreshTask implements Runnable {
+
+        private final HandlerId id;
+        private final long expTime;
+        private final String queryId;
+        private final Class<?> handlerClass;
+        private final String queryString;
+        private final Integer perPage;
+        private final Integer page;
+        private final Integer row;
+        private final Integer column;
+        private final List<Integer> projection;
+
+        public RefreshTask(Handler<?,?> handler, long expTime) {
+            this.id = handler.getId();
+            this.expTime = expTime;
+            this.queryId = handler.getQuery().getQid().getId();
+            this.handlerClass = handler.getClass();
+            this.queryString = handler.getQueryString();
+            if (handler instanceof PagedHandler) {
+                this.perPage = ((PagedHandler<?,?>) handler).getPerPage();
+                this.page = ((PagedHandler<?,?>) handler).getPage();
+            } else {
+                this.perPage = null;
+                this.page = null;
+            }
+            if (handler instanceof LobHandler) {
+                this.row = ((LobHandler) handler).getRow();
+                this.column = ((LobHandler) handler).getColumn();
+            } else {
+                this.row = null;
+                this.column = null;
+            }
+            this.projection = handler instanceof DataHandler ? ((DataHandler) handler).getProjection() : null;
+        }
+
+        /**
+         * Recreate handler of the element. Query access is not recorded
+         * so that refreshes do not keep idle queries from eviction.
+         * @return handler or null if the query is gone
+         */
+        private Handler<?,?> createHandler() {
+            Query q = qf.peekQuery(queryId);
+            if (q == null) {
+                return null;
+            }
+            Form form = new Form(queryString);
+            if (handlerClass == CountHandler.class) {
+                return rf.createCountHandler(q, form);
+            }
+            if (handlerClass == LobHandler.class) {
+                LobHandler h = rf.createLobHandler(q, form);
+                h.setPerPage(perPage);
+                h.setPage(page);
+                h.setRow(row);
+                h.setColumn(column);
+                return h;
+            }
+            DataHandler h = rf.createDataHandler(q, form);
+            h.setPerPage(perPage);
+            h.setPage(page);
+            h.setProjection(projection);
+            return h;
+        }
+
+        @Override
+        public void run() {
+            try {
+
+                Handler<?,?> handler = createHandler();
+                if (handler == null || !id.equals(handler.getId())) {
+                    // Query removed meanwhile
+                    rates.remove(id);
+                    return;
+                }
+
+                CacheStats cacheStats = handler.getCacheStats();
+                if (cacheStats.getExpTime() != expTime) {
+                    // Refreshed or removed meanwhile
+                    rates.remove(id);
+                    return;
+                }
+
+                Query q = handler.getQuery();
+                DecayingRate rate = rates.get(id);
+                long now = System.currentTimeMillis();
+                double expectedHits = rate == null ? 0.0 : rate.getCount(now);
+                double loadSeconds = q.getStats().getCacheTime() / 1000.0;
+
+                if (log.isDebugEnabled()) {
+                    log.debug(String.format("Refresh: id = (%s), expectedHits = (%.2f), loadSeconds = (%.3f)",
+                            id, expectedHits, loadSeconds));
+                }
+
+                if (expectedHits < cfg.getRefreshMinHits() * Math.max(1.0, loadSeconds)) {
+                    declined.incrementAndGet();
+                    rates.remove(id);
+                    return;
+                }
+
+                if (!getBudget(q.getConnectionName()).tryAcquire(now)) {
+                    throttled.incrementAndGet();
+                    rates.remove(id);
+                    return;
+                }
+
+                Exporter<?> dataExporter = qf.getExporter(handler);
+                dataExporter.refreshValue();
+                refreshed.incrementAndGet();
+
+                // Refreshed value was not admitted to cache
+                if (!wheel.isPending(id)) {
+                    rates.remove(id);
+                }
+
+            } catch (Exception ex) {
+                rates.remove(id);
+                log.error(String.format("Error while refreshing %s", id), ex);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,265 @@
+package net.resthub.server.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j;
+
+/**
+ * ResultStore: restart persistent store of cached results. Each result is
+ * kept in its own file under the query md5 directory with the expiration
+ * time in front of the serialized value. Writes are done in the background.
+ * Stored keys with expiration times are indexed in memory at boot so that
+ * files are opened only for results that exist.
+ * @author valdo
+ */
+@Log4j
+public class ResultStore implements AutoCloseable {
+
+    public static final long ETERNAL = 0L;
+
+    private final File dir;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor();
+
+    /**
+     * Index of stored results: expiration time by result key by query key.
+     */
+    private final ConcurrentMap<String, ConcurrentMap<String, Long>> index = new ConcurrentHashMap<>();
+
+    public ResultStore(File dir) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException(String.format("Can not create result store directory %s", dir));
+        }
+        this.dir = dir;
+        load();
+        log.info(String.format("Result store at %s: %d results", dir, getSize()));
+    }
+
+    /**
+     * Index stored results. Expired, unreadable and partially written
+     * results are removed.
+     */
+    private void load() {
+        long now = System.currentTimeMillis();
+        File[] qdirs = dir.listFiles();
+        if (qdirs == null) {
+            return;
+        }
+        for (File qdir: qdirs) {
+            File[] files = qdir.listFiles();
+            if (files == null) {
+                continue;
+            }
+            for (File f: files) {
+                if (!f.getName().endsWith(".tmp")) {
+                    try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(f)))) {
+                        long expTime = in.readLong();
+                        if (expTime == ETERNAL || expTime > now) {
+                            getIndex(qdir.getName()).put(f.getName(), expTime);
+                            continue;
+                        }
+                    } catch (IOException ex) {
+                        log.warn(String.format("Can not read result %s/%s: %s", qdir.getName(), f.getName(), ex.getMessage()));
+                    }
+                }
+                f.delete();
+            }
+            if (!index.containsKey(qdir.getName())) {
+                qdir.delete();
+            }
+        }
+    }
+
+    private ConcurrentMap<String, Long> getIndex(String queryKey) {
+        ConcurrentMap<String, Long> qindex = index.get(queryKey);
+        if (qindex == null) {
+            qindex = new ConcurrentHashMap<>();
+            ConcurrentMap<String, Long> prev = index.putIfAbsent(queryKey, qindex);
+            if (prev != null) {
+                qindex = prev;
+            }
+        }
+        return qindex;
+    }
+
+    private void unindex(String queryKey, String key) {
+        ConcurrentMap<String, Long> qindex = index.get(queryKey);
+        if (qindex != null) {
+            qindex.remove(key);
+        }
+    }
+
+    /**
+     * Write result in the background.
+     * @param queryKey stable query key (md5)
+     * @param key stable result key within the query
+     * @param value
+     * @param expTime expiration time in milliseconds or ETERNAL
+     */
+    public void write(final String queryKey, final String key, final CcBase<?> value, final long expTime) {
+        
+        // Index taken now so that writes pending at removeAll are not indexed
+        final ConcurrentMap<String, Long> qindex = getIndex(queryKey);
+        writer.submit(new Runnable() {
+
+            @Override
+            public void run() {
+                File qdir = new File(dir, queryKey);
+                if (!qdir.isDirectory() && !qdir.mkdirs()) {
+                    log.warn(String.format("Can not create result store directory %s", qdir));
+                    return;
+                }
+                File tmp = new File(qdir, key + ".tmp");
+                try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                    out.writeLong(expTime);
+                    out.writeObject(value);
+                } catch (IOException ex) {
+                    log.warn(String.format("Can not write result %s/%s: %s", queryKey, key, ex.getMessage()));
+                    tmp.delete();
+                    return;
+                }
+                File f = new File(qdir, key);
+                if (f.exists()) {
+                    f.delete();
+                }
+                if (tmp.renameTo(f)) {
+                    qindex.put(key, expTime);
+                } else {
+                    qindex.remove(key);
+                    tmp.delete();
+                }
+            }
+
+        });
+    }
+
+    /**
+     * Read result. Only indexed results are read, expired or unreadable 
+     * result is removed.
+     * @param queryKey
+     * @param key
+     * @return entry or null if not found or expired
+     */
+    public Entry read(String queryKey, String key) {
+        Map<String, Long> qindex = index.get(queryKey);
+        Long indexed = qindex == null ? null : qindex.get(key);
+        if (indexed == null) {
+            return null;
+        }
+        File f = new File(new File(dir, queryKey), key);
+        if (indexed != ETERNAL && indexed <= System.currentTimeMillis()) {
+            unindex(queryKey, key);
+            f.delete();
+            return null;
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(f)))) {
+            long expTime = in.readLong();
+            if (expTime != ETERNAL && expTime <= System.currentTimeMillis()) {
+                in.close();
+                unindex(queryKey, key);
+                f.delete();
+                return null;
+            }
+            return new Entry((CcBase<?>) in.readObject(), expTime);
+        } catch (IOException | ClassNotFoundException | ClassCastException ex) {
+            log.warn(String.format("Can not read result %s/%s: %s", queryKey, key, ex.getMessage()));
+            unindex(queryKey, key);
+            f.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Remove all results of the query.
+     * @param queryKey
+     */
+    public void removeAll(final String queryKey) {
+        index.remove(queryKey);
+        writer.submit(new Runnable() {
+
+            @Override
+            public void run() {
+                File qdir = new File(dir, queryKey);
+                File[] files = qdir.listFiles();
+                if (files != null) {
+                    for (File f: files) {
+                        f.delete();
+                    }
+                }
+                qdir.delete();
+            }
+
+        });
+    }
+
+    /**
+     * Remove expired results.
+     */
+    public void removeExpired() {
+        writer.submit(new Runnable() {
+
+            @Override
+            public void run() {
+                long now = System.currentTimeMillis();
+                for (Map.Entry<String, ConcurrentMap<String, Long>> qe: index.entrySet()) {
+                    File qdir = new File(dir, qe.getKey());
+                    Iterator<Map.Entry<String, Long>> it = qe.getValue().entrySet().iterator();
+                    while (it.hasNext()) {
+                        Map.Entry<String, Long> e = it.next();
+                        if (e.getValue() != ETERNAL && e.getValue() <= now) {
+                            it.remove();
+                            new File(qdir, e.getKey()).delete();
+                        }
+                    }
+                    if (qe.getValue().isEmpty()) {
+                        qdir.delete();
+                    }
+                }
+            }
+
+        });
+    }
+
+    /**
+     * Number of stored results.
+     * @return 
+     */
+    public int getSize() {
+        int size = 0;
+        for (Map<String, Long> qindex: index.values()) {
+            size += qindex.size();
+        }
+        return size;
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        writer.shutdown();
+        writer.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class Entry {
+
+        private final CcBase<?> value;
+        private final long expTime;
+
+    }
+
+}
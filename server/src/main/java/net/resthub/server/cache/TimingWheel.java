@@ -0,0 +1,237 @@
+package net.resthub.server.cache;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Predicate;
+import lombok.extern.log4j.Log4j;
+
+/**
+ * TimingWheel: hashed timing wheel that runs keyed tasks on a bounded
+ * worker pool. Scheduling a key which is already pending replaces the
+ * pending task (deduplication). Tasks which do not fit the worker queue
+ * are dropped.
+ * @author valdo
+ * @param <K> task key
+ */
+@Log4j
+public class TimingWheel<K> implements AutoCloseable {
+
+    private final long tickMs;
+    private final int mask;
+    private final List<List<Timeout<K>>> wheel;
+    private final ConcurrentMap<K, Timeout<K>> pending = new ConcurrentHashMap<>();
+    private final Queue<Timeout<K>> incoming = new ConcurrentLinkedQueue<>();
+    private final ThreadPoolExecutor workers;
+    private final Thread ticker;
+    private final long startTime = System.nanoTime();
+    private volatile boolean running = true;
+    private long tick = 0;
+
+    private final AtomicLong scheduled = new AtomicLong();
+    private final AtomicLong fired = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * Constructor.
+     * @param name thread name prefix
+     * @param tickMs tick duration in milliseconds
+     * @param wheelSize number of buckets (rounded up to the power of two)
+     * @param threads worker threads
+     * @param queueSize worker queue size
+     */
+    public TimingWheel(final String name, long tickMs, int wheelSize, int threads, int queueSize) {
+        int size = 1;
+        while (size < wheelSize) {
+            size <<= 1;
+        }
+        this.tickMs = tickMs;
+        this.mask = size - 1;
+        this.wheel = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            wheel.add(new ArrayList<Timeout<K>>());
+        }
+
+        final AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<Runnable>(queueSize),
+            new ThreadFactory() {
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, name + "-" + threadNumber.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+
+            },
+            new RejectedExecutionHandler() {
+
+                @Override
+                public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+                    dropped.incrementAndGet();
+                }
+
+            });
+        this.workers.allowCoreThreadTimeOut(true);
+
+        this.ticker = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                while (running) {
+                    try {
+                        waitForNextTick();
+                        transferIncoming();
+                        expire();
+                        tick++;
+                    } catch (InterruptedException ex) {
+                        return;
+                    } catch (RuntimeException ex) {
+                        log.error("Timing wheel error", ex);
+                    }
+                }
+            }
+
+        }, name + "-ticker");
+        this.ticker.setDaemon(true);
+        this.ticker.start();
+    }
+
+    /**
+     * Schedule task, replacing the pending task of the same key.
+     * @param key
+     * @param delayMs delay in milliseconds
+     * @param task
+     */
+    public void schedule(K key, long delayMs, Runnable task) {
+        long deadline = System.nanoTime() - startTime + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMs));
+        Timeout<K> t = new Timeout<>(key, task, deadline);
+        Timeout<K> prev = pending.put(key, t);
+        if (prev != null) {
+            prev.cancelled = true;
+        }
+        incoming.add(t);
+        scheduled.incrementAndGet();
+    }
+
+    public void cancel(K key) {
+        Timeout<K> t = pending.remove(key);
+        if (t != null) {
+            t.cancelled = true;
+        }
+    }
+
+    /**
+     * Cancel pending tasks accepted by the filter.
+     * @param filter
+     * @return keys of cancelled tasks
+     */
+    public List<K> cancelAll(Predicate<Runnable> filter) {
+        List<K> keys = new ArrayList<>();
+        for (Timeout<K> t: pending.values()) {
+            if (filter.apply(t.task) && pending.remove(t.key, t)) {
+                t.cancelled = true;
+                keys.add(t.key);
+            }
+        }
+        return keys;
+    }
+
+    public boolean isPending(K key) {
+        return pending.containsKey(key);
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    public long getScheduledCount() {
+        return scheduled.get();
+    }
+
+    public long getFiredCount() {
+        return fired.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        ticker.interrupt();
+        workers.shutdownNow();
+    }
+
+    private void waitForNextTick() throws InterruptedException {
+        long deadline = TimeUnit.MILLISECONDS.toNanos(tickMs * (tick + 1));
+        long sleep = deadline - (System.nanoTime() - startTime);
+        if (sleep > 0) {
+            TimeUnit.NANOSECONDS.sleep(sleep);
+        }
+    }
+
+    private void transferIncoming() {
+        Timeout<K> t;
+        while ((t = incoming.poll()) != null) {
+            if (t.cancelled) {
+                continue;
+            }
+            long ticks = t.deadline / TimeUnit.MILLISECONDS.toNanos(tickMs);
+            if (ticks < tick) {
+                ticks = tick;
+            }
+            t.rounds = (ticks - tick) / wheel.size();
+            wheel.get((int) (ticks & mask)).add(t);
+        }
+    }
+
+    private void expire() {
+        Iterator<Timeout<K>> it = wheel.get((int) (tick & mask)).iterator();
+        while (it.hasNext()) {
+            Timeout<K> t = it.next();
+            if (t.cancelled) {
+                it.remove();
+            } else if (t.rounds > 0) {
+                t.rounds--;
+            } else {
+                it.remove();
+                if (pending.remove(t.key, t)) {
+                    fired.incrementAndGet();
+                    workers.execute(t.task);
+                }
+            }
+        }
+    }
+
+    private static class Timeout<K> {
+
+        private final K key;
+        private final Runnable task;
+        private final long deadline;
+        private volatile boolean cancelled = false;
+        private long rounds;
+
+        public Timeout(K key, Runnable task, long deadline) {
+            this.key = key;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+    }
+
+}
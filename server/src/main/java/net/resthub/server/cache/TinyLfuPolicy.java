@@ -0,0 +1,118 @@
+package net.resthub.server.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.RequiredArgsConstructor;
+import net.sf.ehcache.Element;
+import net.sf.ehcache.store.Policy;
+
+/**
+ * TinyLfuPolicy: frequency and size aware eviction policy for the shared
+ * cache region. Eviction victim is the sampled element with the lowest
+ * frequency per size. New element competes with a sampled victim before
+ * it is put into the full region and is not admitted if it is not more
+ * valuable (admission filter), so that one-off results do not push out
+ * frequently used ones.
+ * @author valdo
+ */
+@RequiredArgsConstructor
+public class TinyLfuPolicy implements Policy {
+
+    public static final String NAME = "TinyLFU";
+    
+    /**
+     * Element size lookup.
+     */
+    public interface Weigher {
+        
+        long weigh(Object key);
+        
+    }
+    
+    private final FrequencySketch sketch;
+    private final Weigher weigher;
+    
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public Element selectedBasedOnPolicy(Element[] sampledElements, Element justAdded) {
+        Element victim = null;
+        for (Element el: sampledElements) {
+            if (el != null && !el.equals(justAdded)) {
+                if (victim == null || compare(victim, el)) {
+                    victim = el;
+                }
+            }
+        }
+        
+        if (victim != null) {
+            evicted.incrementAndGet();
+        }
+        
+        return victim;
+    }
+
+    /**
+     * Admission filter: candidate is admitted if it is more valuable than 
+     * the victim or there is no victim.
+     * @param candidate candidate key
+     * @param candidateWeight candidate size
+     * @param victim victim key, null if there is none
+     * @param victimWeight victim size
+     * @return true if candidate is admitted
+     */
+    public boolean admit(Object candidate, long candidateWeight, Object victim, long victimWeight) {
+        if (victim == null || score(candidate, candidateWeight) > score(victim, victimWeight)) {
+            return true;
+        }
+        rejected.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Admission score of the key.
+     * @param key
+     * @param weight key size
+     * @return 
+     */
+    public double score(Object key, long weight) {
+        long kb = weight >>> 10;
+        return sketch.frequency(key) / (Math.log(2 + kb) / Math.log(2));
+    }
+
+    /**
+     * @param element1
+     * @param element2
+     * @return true if the second element is preferable for eviction
+     */
+    @Override
+    public boolean compare(Element element1, Element element2) {
+        return score(element2) < score(element1);
+    }
+    
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+    
+    public long getEvictedCount() {
+        return evicted.get();
+    }
+    
+    /**
+     * Frequency per size: size is taken logarithmically so that large
+     * pages are not evicted regardless of their popularity.
+     * @param el
+     * @return 
+     */
+    private double score(Element el) {
+        Object key = el.getObjectKey();
+        return score(key, weigher.weigh(key));
+    }
+
+}
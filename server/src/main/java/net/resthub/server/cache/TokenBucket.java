@@ -0,0 +1,40 @@
+package net.resthub.server.cache;
+
+/**
+ * TokenBucket: rate limiter allowing the given number of permits per second
+ * with bursts up to the bucket capacity.
+ * @author valdo
+ */
+public class TokenBucket {
+
+    private final double rate;
+    private final double capacity;
+    private double tokens;
+    private long lastTime;
+
+    /**
+     * Constructor.
+     * @param rate permits per second
+     * @param capacity max burst
+     * @param now current time in milliseconds
+     */
+    public TokenBucket(double rate, double capacity, long now) {
+        this.rate = rate;
+        this.capacity = Math.max(1.0, capacity);
+        this.tokens = this.capacity;
+        this.lastTime = now;
+    }
+
+    public synchronized boolean tryAcquire(long now) {
+        if (now > lastTime) {
+            tokens = Math.min(capacity, tokens + (now - lastTime) * rate / 1000.0);
+            lastTime = now;
+        }
+        if (tokens >= 1.0) {
+            tokens -= 1.0;
+            return true;
+        }
+        return false;
+    }
+
+}
@@ -10,7 +10,6 @@ import java.util.regex.Pattern;
 import net.resthub.model.MdColumn;
 import net.resthub.server.cache.CcData;
 import net.resthub.server.handler.DataHandler;
-import net.resthub.server.query.Query;
 
 import org.restlet.data.MediaType;
 import org.restlet.data.Reference;
@@ -41,11 +40,10 @@ public class CSVConverter implements DataConverter {
     @Override
     public Representation convert(DataHandler handler, final Reference ref, CcData data) throws Exception {
         final StringBuilder sb = new StringBuilder();
-        Query query = handler.getQuery();
         
         sb.setLength(0);
         String sep = "";
-        for (MdColumn c : query.getColumns()) {
+        for (MdColumn c : handler.getColumns()) {
             sb.append(sep).append(escapeStr(c.getCName()));
             sep = FS;
         }
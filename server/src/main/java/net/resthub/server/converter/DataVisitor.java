@@ -31,13 +31,14 @@ public abstract class DataVisitor {
     
     public void visit(List<Object[]> data) {
         if (data != null) {
+            List<MdColumn> columns = handler.getColumns();
             for (rowNumber = 0; rowNumber < data.size(); rowNumber++) {
                 Object[] row = data.get(rowNumber);
                 startRow();
 
                 Iterator<Object> it = Arrays.asList(row).iterator();
-                for (colNumber = 0; colNumber < handler.getQuery().getColumns().size(); colNumber++) {
-                    column = handler.getQuery().getColumns().get(colNumber);
+                for (colNumber = 0; colNumber < columns.size(); colNumber++) {
+                    column = columns.get(colNumber);
                     value = it.next();
                     visitCol();
                 }
@@ -48,11 +49,19 @@ public abstract class DataVisitor {
         }
     }
 
+    /**
+     * LOB length (bytes for BLOB, characters for CLOB) as projected by the data query.
+     * @return length or null if LOB is null
+     */
+    public Long getLobLength() {
+        return value == null ? null : ((Number) value).longValue();
+    }
+    
     public URL getLobReference(Reference ref) {
         if (value == null) {
             return null;
         } else {
-            return handler.getReference(ref, rowNumber, colNumber, "lob");
+            return handler.getReference(ref, rowNumber, handler.getColumnIndex(colNumber), "lob");
         }
     }
 
@@ -9,6 +9,7 @@ import net.resthub.server.handler.DataHandler;
 import net.resthub.server.query.Query;
 
 import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
 import org.restlet.data.Reference;
 import org.restlet.ext.json.JsonRepresentation;
@@ -26,19 +27,22 @@ public class JSONConverter implements DataConverter {
     public Representation convert(final DataHandler handler, final Reference ref, final CcData data) throws Exception {
         JSONObject obj = new JSONObject();
         final JSONArray arr = new JSONArray();
+        final JSONArray lengths = new JSONArray();
         Query query = handler.getQuery();
         
         if (handler.isPrintColumns()) {
-            obj.put("cols", query.getColumnsJSON());
+            obj.put("cols", Query.getColumnsJSON(handler.getColumns()));
         }
         
         new DataVisitor(handler) {
             
             private JSONArray o;
+            private JSONObject l;
             
             @Override
             public void startRow() {
                 o = new JSONArray();
+                l = null;
             }
             
             @Override
@@ -50,6 +54,16 @@ public class JSONConverter implements DataConverter {
                     case CLOB:
                     case BLOB:
                         o.put(getLobReference(ref));
+                        if (value != null) {
+                            if (l == null) {
+                                l = new JSONObject();
+                            }
+                            try {
+                                l.put(column.getCName(), getLobLength());
+                            } catch (JSONException ex) {
+                                throw new IllegalStateException(ex);
+                            }
+                        }
                         break;
                     default:
                         o.put(value);
@@ -59,11 +73,15 @@ public class JSONConverter implements DataConverter {
             @Override
             public void endRow() {
                 arr.put(o);
+                lengths.put(l != null ? l : JSONObject.NULL);
             }
             
         }.visit(data.getValue());
         
         obj.put("data", arr);
+        if (query.hasLobColumns()) {
+            obj.put("lengths", lengths);
+        }
         
         return new JsonRepresentation(obj);
     }
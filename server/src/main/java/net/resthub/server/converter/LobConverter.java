@@ -2,48 +2,210 @@ package net.resthub.server.converter;
 
 import java.io.IOException;
 import java.io.OutputStream;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import net.resthub.factory.ConnectionManager;
+import net.resthub.model.MdType;
 import net.resthub.server.cache.CcLob;
 import net.resthub.server.exception.ClientErrorException;
+import net.resthub.server.factory.BulkheadFactory;
+import net.resthub.server.factory.DataFactory;
 import net.resthub.server.handler.LobHandler;
+
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.restlet.data.CharacterSet;
+import org.restlet.data.Range;
 import org.restlet.data.Status;
 import org.restlet.representation.EmptyRepresentation;
 import org.restlet.representation.OutputRepresentation;
 import org.restlet.representation.Representation;
-import org.restlet.representation.StringRepresentation;
 
 /**
- * LobConverter class
+ * LobConverter class. Cached LOBs are served from memory, LOBs above the
+ * cache limit are streamed from the database while writing the response.
+ * Single byte range requests are honoured for both. Bulkhead permit of the
+ * streamed LOB is acquired by the resource before the response is committed
+ * and released with the representation.
  * @author valdo
  */
+@Singleton
 public class LobConverter {
 
+    @Inject
+    private ConnectionManager cm;
+
+    @Inject
+    private DataFactory df;
+
     public Representation convert(final LobHandler handler, final CcLob data) throws Exception {
-        
-        if (data.getValue() == null) {
+        return convert(handler, data, null, null);
+    }
+
+    /**
+     * Convert.
+     * @param handler
+     * @param data
+     * @param range requested range or null
+     * @param permit bulkhead permit of the streamed LOB, released with 
+     * the representation
+     * @return
+     * @throws Exception 
+     */
+    public Representation convert(final LobHandler handler, final CcLob data, final Range range, 
+            final BulkheadFactory.Permit permit) throws Exception {
+
+        if (data.getValue() == null && !data.isStreamed()) {
             return new EmptyRepresentation();
         }
-        
+
         switch (handler.getMdColumn().getType()) {
             case BLOB:
-                
-                return new OutputRepresentation(handler.getMediaType()) {
-                    
-                    @Override
-                    public void write(OutputStream out) throws IOException {
-                        out.write(data.getValue());
-                    }
-                };
-                
             case CLOB:
-                
-                return new StringRepresentation(new String(data.getValue()), handler.getMediaType());
-                
+                break;
             default:
-                
                 throw new ClientErrorException(Status.CLIENT_ERROR_BAD_REQUEST);
-                
         }
-        
+
+        if (!data.isStreamed()) {
+
+            final byte[] value = data.getValue();
+            final Range r = resolveRange(range, value.length);
+            final int offset = r == null ? 0 : (int) r.getIndex();
+            final int length = r == null ? value.length : (int) r.getSize();
+
+            Representation rep = new OutputRepresentation(handler.getMediaType()) {
+
+                @Override
+                public void write(OutputStream out) throws IOException {
+                    out.write(value, offset, length);
+                }
+
+            };
+
+            rep.setSize(value.length);
+            rep.setRange(r);
+            setCharacterSet(handler, rep);
+
+            return rep;
+
+        }
+
+        Representation rep;
+        if (handler.getMdColumn().getType() == MdType.BLOB) {
+
+            Range r = resolveRange(range, data.getLength());
+            long offset = r == null ? 0 : r.getIndex();
+            long length = r == null ? data.getLength() : r.getSize();
+
+            rep = new LobStreamRepresentation(handler, offset, length, permit);
+            rep.setSize(data.getLength());
+            rep.setRange(r);
+
+        } else {
+
+            // Streamed CLOB byte size is not known upfront: no ranges
+            rep = new LobStreamRepresentation(handler, 0, data.getLength(), permit);
+            rep.setSize(Representation.UNKNOWN_SIZE);
+            setCharacterSet(handler, rep);
+
+        }
+
+        return rep;
+
+    }
+
+    private static void setCharacterSet(LobHandler handler, Representation rep) {
+        switch (handler.getMdColumn().getType()) {
+            case CLOB:
+                rep.setCharacterSet(CharacterSet.UTF_8);
+                break;
+        }
+    }
+
+    /**
+     * Resolve range against the total size.
+     * @param range requested range or null
+     * @param total total size
+     * @return range with absolute index and size or null if whole entity is requested
+     */
+    private static Range resolveRange(Range range, long total) {
+        if (range == null) {
+            return null;
+        }
+
+        long index = range.getIndex();
+        long size = range.getSize();
+
+        if (index == Range.INDEX_LAST) {
+            if (size == Range.SIZE_MAX || size <= 0) {
+                throw new ClientErrorException(Status.CLIENT_ERROR_REQUESTED_RANGE_NOT_SATISFIABLE);
+            }
+            size = Math.min(size, total);
+            index = total - size;
+        } else {
+            if (index >= total) {
+                throw new ClientErrorException(Status.CLIENT_ERROR_REQUESTED_RANGE_NOT_SATISFIABLE);
+            }
+            if (size == Range.SIZE_MAX || index + size > total) {
+                size = total - index;
+            }
+        }
+
+        if (index == 0 && size == total) {
+            return null;
+        }
+
+        return new Range(index, size);
     }
-    
+
+    private class LobStreamRepresentation extends OutputRepresentation {
+
+        private final LobHandler handler;
+        private final long offset;
+        private final long length;
+        private final BulkheadFactory.Permit permit;
+
+        public LobStreamRepresentation(LobHandler handler, long offset, long length, BulkheadFactory.Permit permit) {
+            super(handler.getMediaType());
+            this.handler = handler;
+            this.offset = offset;
+            this.length = length;
+            this.permit = permit;
+        }
+
+        @Override
+        public void write(OutputStream out) throws IOException {
+            try {
+                Session session = cm.getSession(handler.getQuery().getConnectionName());
+                Transaction tr = session.beginTransaction();
+                try {
+
+                    df.writeLob(session, handler, offset, length, out);
+
+                } finally {
+                    tr.commit();
+                    session.close();
+                }
+            } catch (IOException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                throw new IOException(ex);
+            } finally {
+                release();
+            }
+        }
+
+        @Override
+        public void release() {
+            if (permit != null) {
+                permit.close();
+            }
+            super.release();
+        }
+
+    }
+
 }
@@ -0,0 +1,129 @@
+package net.resthub.server.converter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import lombok.extern.log4j.Log4j;
+import net.resthub.factory.ConnectionManager;
+import net.resthub.model.MdType;
+import net.resthub.server.ServerAppConfig;
+import net.resthub.server.cache.CcLob;
+import net.resthub.server.factory.BulkheadFactory;
+import net.resthub.server.factory.DataFactory;
+import net.resthub.server.handler.LobHandler;
+import net.resthub.server.query.QueryStats;
+
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.restlet.data.MediaType;
+import org.restlet.representation.OutputRepresentation;
+import org.restlet.representation.Representation;
+
+/**
+ * LobsConverter class. Writes all LOB cells of a page (or of a single column)
+ * into a ZIP stream fetched with a single query execution. Entries are
+ * named {row}_{col} as in the single cell LOB resource. Bulkhead permit
+ * is acquired by the resource before the response is committed and released
+ * with the representation.
+ * @author valdo
+ */
+@Log4j
+@Singleton
+public class LobsConverter {
+
+    @Inject
+    private ConnectionManager cm;
+
+    @Inject
+    private DataFactory df;
+
+    @Inject
+    private ServerAppConfig cfg;
+
+    /**
+     * Convert.
+     * @param handler bulk handler (row is not set)
+     * @param warm put LOBs below the cache limit to the per cell cache
+     * @param permit bulkhead permit, released with the representation
+     * @return
+     */
+    public Representation convert(final LobHandler handler, final boolean warm, final BulkheadFactory.Permit permit) {
+
+        return new OutputRepresentation(MediaType.APPLICATION_ZIP) {
+
+            @Override
+            public void write(OutputStream out) throws IOException {
+                final ZipOutputStream zip = new ZipOutputStream(out);
+                final QueryStats stats = handler.getQuery().getStats();
+                final long limit = cfg.getLobCacheLimit();
+
+                long startTime = System.currentTimeMillis();
+                try {
+                    Session session = cm.getSession(handler.getQuery().getConnectionName());
+                    Transaction tr = session.beginTransaction();
+                    try {
+
+                        df.visitLobs(session, handler, new DataFactory.LobVisitor() {
+
+                            @Override
+                            public void visit(int row, int column, Object lob) throws Exception {
+                                MdType type = handler.getQuery().getColumns().get(column).getType();
+
+                                zip.putNextEntry(new ZipEntry(String.format("%d_%d", row, column)));
+
+                                CcLob cc = df.readLob(lob, type, limit);
+                                if (cc.isStreamed()) {
+                                    df.writeLob(lob, type, 0, cc.getLength(), zip);
+                                } else {
+                                    zip.write(cc.getValue());
+                                    if (warm) {
+                                        handler.createCellHandler(row, column).setCached(cc);
+                                    }
+                                }
+
+                                zip.closeEntry();
+                            }
+
+                        });
+
+                    } catch (IOException ex) {
+                        stats.setSqlError();
+                        throw ex;
+                    } catch (Exception ex) {
+                        stats.setSqlError();
+                        throw new IOException(ex);
+                    } finally {
+                        tr.commit();
+                        session.close();
+                    }
+                } finally {
+                    release();
+                }
+
+                Long elapsed = System.currentTimeMillis() - startTime;
+                stats.setSqlSuccess();
+
+                if (log.isDebugEnabled()) {
+                    log.debug(String.format("LOBs of %s written, time: (%d)", handler, elapsed));
+                }
+
+                zip.finish();
+                zip.flush();
+            }
+
+            @Override
+            public void release() {
+                permit.close();
+                super.release();
+            }
+
+        };
+
+    }
+
+}
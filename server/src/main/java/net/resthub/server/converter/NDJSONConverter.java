@@ -0,0 +1,103 @@
+package net.resthub.server.converter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import net.resthub.server.cache.CcData;
+import net.resthub.server.handler.DataHandler;
+import net.resthub.server.query.Query;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.restlet.data.MediaType;
+import org.restlet.data.Reference;
+import org.restlet.representation.Representation;
+import org.restlet.representation.WriterRepresentation;
+
+/**
+ * NDJSONConverter: writes one JSON array per row, separated by new lines,
+ * so that clients can process rows while the response is still being sent.
+ * Rows are written from the data already loaded by DataFactory, i.e. the
+ * server memory still grows with the page size.
+ * @author valdo
+ */
+public class NDJSONConverter implements DataConverter {
+
+    public static final MediaType APPLICATION_NDJSON = MediaType.register("application/x-ndjson", "Newline delimited JSON");
+
+    private static final DateFormat DATE_FORMAT = new SimpleDateFormat("y-M-d H:ms:d");
+    private static final String NL = "\n";
+    private static final int FLUSH_ROWS = 100;
+
+    @Override
+    public Representation convert(final DataHandler handler, final Reference ref, final CcData data) throws Exception {
+        return new WriterRepresentation(APPLICATION_NDJSON) {
+
+            @Override
+            public void write(final Writer writer) throws IOException {
+
+                try {
+
+                    if (handler.isPrintColumns()) {
+                        writer.write(Query.getColumnsJSON(handler.getColumns()).toString());
+                        writer.write(NL);
+                    }
+
+                    new DataVisitor(handler) {
+
+                        private JSONArray o;
+
+                        @Override
+                        public void startRow() {
+                            o = new JSONArray();
+                        }
+
+                        @Override
+                        public void visitCol() {
+                            switch (column.getType()) {
+                                case DATE:
+                                    o.put(value != null ? DATE_FORMAT.format((Date) value) : null);
+                                    break;
+                                case CLOB:
+                                case BLOB:
+                                    o.put(getLobReference(ref));
+                                    break;
+                                default:
+                                    o.put(value);
+                            }
+                        }
+
+                        @Override
+                        public void endRow() {
+                            try {
+                                writer.write(o.toString());
+                                writer.write(NL);
+                                if ((rowNumber + 1) % FLUSH_ROWS == 0) {
+                                    writer.flush();
+                                }
+                            } catch (IOException ex) {
+                                throw new IllegalStateException(ex);
+                            }
+                        }
+
+                    }.visit(data.getValue());
+
+                } catch (JSONException ex) {
+                    throw new IOException(ex);
+                } catch (IllegalStateException ex) {
+                    if (ex.getCause() instanceof IOException) {
+                        throw (IOException) ex.getCause();
+                    }
+                    throw ex;
+                }
+
+                writer.flush();
+            }
+
+        };
+    }
+
+}
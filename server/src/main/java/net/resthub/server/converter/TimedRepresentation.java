@@ -0,0 +1,53 @@
+package net.resthub.server.converter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import net.resthub.server.query.LatencyHistogram;
+
+import org.restlet.representation.OutputRepresentation;
+import org.restlet.representation.Representation;
+
+/**
+ * TimedRepresentation: records conversion time of the wrapped entity
+ * including its encoding while the response is written, i.e. of the
+ * streamed media types.
+ * @author valdo
+ */
+public class TimedRepresentation extends OutputRepresentation {
+
+    private final Representation entity;
+    private final LatencyHistogram histogram;
+    private final long buildTime;
+
+    /**
+     * Constructor.
+     * @param entity entity to write
+     * @param histogram conversion time histogram
+     * @param buildTime time spent to create the entity in nanoseconds
+     */
+    public TimedRepresentation(Representation entity, LatencyHistogram histogram, long buildTime) {
+        super(entity.getMediaType(), entity.getSize());
+        setCharacterSet(entity.getCharacterSet());
+        this.entity = entity;
+        this.histogram = histogram;
+        this.buildTime = buildTime;
+    }
+
+    @Override
+    public void write(OutputStream out) throws IOException {
+        long start = System.nanoTime();
+        try {
+            entity.write(out);
+        } finally {
+            histogram.record(buildTime + System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void release() {
+        entity.release();
+        super.release();
+    }
+
+}
@@ -18,7 +18,6 @@ import javax.xml.transform.stream.StreamResult;
 import net.resthub.model.MdColumn;
 import net.resthub.server.cache.CcData;
 import net.resthub.server.handler.DataHandler;
-import net.resthub.server.query.Query;
 
 import org.restlet.data.MediaType;
 import org.restlet.data.Reference;
@@ -46,14 +45,13 @@ public class XMLConverter implements DataConverter {
 
     @Override
     public Representation convert(DataHandler handler, final Reference ref, CcData data) throws Exception {
-        Query query = handler.getQuery();
         DocumentBuilder db = DBF.newDocumentBuilder();
         final Document doc = db.newDocument();
         final Element root = appendElement(doc, "data", doc);
         
         if (handler.isPrintColumns()) {
             Element cols = appendElement(doc, "cols", root);
-            for (MdColumn c: query.getColumns()) {
+            for (MdColumn c: handler.getColumns()) {
                 Element col = appendElement(doc, "col", cols);
                 appendElement(doc, "name", col).setTextContent(c.getName());
                 appendElement(doc, "type", col).setTextContent(c.getType().name());
@@ -74,6 +72,7 @@ public class XMLConverter implements DataConverter {
             public void visitCol() {
                 if (value != null) {
                     String svalue = null;
+                    Long length = null;
                     switch (column.getType()) {
                         case DATE:
                             svalue = DATE_FORMAT.format((Date) value);
@@ -85,15 +84,18 @@ public class XMLConverter implements DataConverter {
                             svalue = (String) value;
                             break;
                         case BLOB:
-                            svalue = getLobReference(ref).toString();
-                            break;
                         case CLOB:
                             svalue = getLobReference(ref).toString();
+                            length = getLobLength();
                             break;
                     }
                     
                     if (svalue != null) {
-                        appendElement(doc, column.getCName(), row).setTextContent(svalue);
+                        Element el = appendElement(doc, column.getCName(), row);
+                        el.setTextContent(svalue);
+                        if (length != null) {
+                            el.setAttribute("length", length.toString());
+                        }
                     }
                     
                 }
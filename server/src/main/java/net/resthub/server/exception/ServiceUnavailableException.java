@@ -0,0 +1,28 @@
+package net.resthub.server.exception;
+
+import lombok.Getter;
+import lombok.extern.log4j.Log4j;
+
+import org.restlet.data.Status;
+import org.restlet.resource.ResourceException;
+
+/**
+ * ServiceUnavailableException: request rejected due to overload,
+ * client should retry after the given number of seconds.
+ * @author valdo
+ */
+@Log4j
+public class ServiceUnavailableException extends ResourceException {
+
+	private static final long serialVersionUID = 1L;
+
+    @Getter
+    private final int retryAfter;
+
+    public ServiceUnavailableException(int retryAfter, String message, Object... args) {
+        super(Status.SERVER_ERROR_SERVICE_UNAVAILABLE, String.format(message, args));
+        this.retryAfter = retryAfter;
+        log.warn(getMessage());
+    }
+
+}
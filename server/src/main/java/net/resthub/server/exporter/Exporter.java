@@ -8,13 +8,17 @@ import lombok.extern.log4j.Log4j;
 import net.resthub.factory.ConnectionManager;
 import net.resthub.server.cache.CcBase;
 import net.resthub.server.exception.ServerErrorException;
+import net.resthub.server.factory.BulkheadFactory;
 import net.resthub.server.factory.DataFactory;
 import net.resthub.server.factory.QueryFactory;
 import net.resthub.server.handler.Handler;
+import net.resthub.server.handler.HandlerId;
 import net.resthub.server.query.QueryStats;
+import net.resthub.server.util.RequestTiming;
 
 import org.hibernate.Session;
 import org.hibernate.Transaction;
+import org.restlet.data.Status;
 import org.restlet.resource.ResourceException;
 
 /**
@@ -36,6 +40,9 @@ public abstract class Exporter <C extends CcBase<?>> {
     @Inject
     private QueryFactory qf;
     
+    @Inject
+    private BulkheadFactory bf;
+    
     private final Handler<C,?> handler;
     
     private volatile C value = null;
@@ -50,66 +57,81 @@ public abstract class Exporter <C extends CcBase<?>> {
     }
     
     private void setValue(boolean useCache) {
-        Integer id = handler.getId();
+        HandlerId id = handler.getId();
 
+        QueryStats stats = handler.getQuery().getStats();
         if (useCache && value != null) {
+            stats.setCoalesced();
+            handler.recordAccess();
+            RequestTiming.flag(RequestTiming.CacheFlag.COALESCED);
             if (log.isDebugEnabled()) {
-                log.debug(String.format("got value from class property, 1LC (%d)", id));
+                log.debug(String.format("got value from class property, 1LC (%s)", id));
             }
             return;  
         }
 
-        QueryStats stats = handler.getQuery().getStats();
         synchronized(this) {
         
             if (useCache && value != null) {
                 
+                stats.setCoalesced();
+                handler.recordAccess();
+                RequestTiming.flag(RequestTiming.CacheFlag.COALESCED);
                 if (log.isDebugEnabled()) {
-                    log.debug(String.format("got value from class property after lock, 1LC (%d)", id));
+                    log.debug(String.format("got value from class property after lock, 1LC (%s)", id));
                 }
                 
             } else {
             
                 if (useCache) {
+                    long begin = RequestTiming.begin();
                     value = handler.getCached();
+                    RequestTiming.end(RequestTiming.Stage.CACHE, begin);
                 }
                 
                 if (useCache && value != null) {
                     
                     stats.setCached();
+                    RequestTiming.flag(RequestTiming.CacheFlag.HIT);
 
                     if (log.isDebugEnabled()) {
-                        log.debug(String.format("got value from cache, 2LC (%d)", id));
+                        log.debug(String.format("got value from cache, 2LC (%s)", id));
                     }
                     
                 } else {
                     
                     long startTime = System.currentTimeMillis();
+                    RequestTiming.flag(RequestTiming.CacheFlag.MISS);
+
+                    try (BulkheadFactory.Permit permit = bf.acquire(handler.getQuery())) {
+                        Session session = cm.getSession(handler.getQuery().getConnectionName());
+                        Transaction tr = session.beginTransaction();
+                        try {
+
+                            value = retrieveData(session);
 
-                    Session session = cm.getSession(handler.getQuery().getConnectionName());
-                    Transaction tr = session.beginTransaction();
-                    try {
-                    	
-                        value = retrieveData(session);
-                        
-                    } catch (Exception ex) {
-                        stats.setSqlError();
-                        if (ResourceException.class.isAssignableFrom(ex.getClass())) {
-                            throw (ResourceException) ex;
-                        } else {
-                            throw new ServerErrorException(ex);
+                        } catch (Exception ex) {
+                            stats.setSqlError();
+                            if (ResourceException.class.isAssignableFrom(ex.getClass())) {
+                                if (Status.SERVER_ERROR_GATEWAY_TIMEOUT.equals(((ResourceException) ex).getStatus())) {
+                                    stats.setTimeout();
+                                }
+                                throw (ResourceException) ex;
+                            } else {
+                                throw new ServerErrorException(ex);
+                            }
+                        } finally {
+                            tr.commit();
+                            session.close();
                         }
-                    } finally {
-                        tr.commit();
-                        session.close();
                     }
 
                     Long elapsed = System.currentTimeMillis() - startTime;
-                    stats.setSqlSuccess(elapsed.intValue());
+                    stats.setSqlSuccess();
                     stats.setCacheTime(elapsed);
                     
                     if (log.isDebugEnabled()) {
-                        log.debug(String.format("got value from database (%d), time: (%d)", id, elapsed));
+                        log.debug(String.format("got value from database (%s), time: (%d)", id, elapsed));
                     }
 
                     handler.setCached(value);
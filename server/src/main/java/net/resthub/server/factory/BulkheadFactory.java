@@ -0,0 +1,209 @@
+package net.resthub.server.factory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import lombok.Getter;
+import net.resthub.server.ServerAppConfig;
+import net.resthub.server.exception.ServiceUnavailableException;
+import net.resthub.server.query.Query;
+import net.resthub.server.table.TableId;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * BulkheadFactory: limits concurrent database requests per connection
+ * and per table so that a slow namespace can not exhaust threads and
+ * connections of the others. Requests over the limit wait up to the
+ * configured deadline and are rejected with 503 afterwards.
+ * @author valdo
+ */
+@Singleton
+public class BulkheadFactory {
+
+    private static final String CONNECTION_PREFIX = "connection:";
+    private static final String TABLE_PREFIX = "table:";
+    private static final String EXPENSIVE_PREFIX = "expensive:";
+
+    private final ServerAppConfig cfg;
+    private final ConcurrentMap<String, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+
+    @Inject
+    public BulkheadFactory(ServerAppConfig cfg) {
+        this.cfg = cfg;
+    }
+
+    /**
+     * Acquire connection, expensive query and table bulkheads of the query.
+     * @param query
+     * @return permit to be closed after the database request
+     * @throws ServiceUnavailableException if bulkhead is saturated till the deadline
+     */
+    public Permit acquire(Query query) throws ServiceUnavailableException {
+        List<Bulkhead> list = new ArrayList<>();
+
+        Bulkhead b = getBulkhead(CONNECTION_PREFIX + query.getConnectionName(),
+                cfg.getConnectionLimit(query.getConnectionName()));
+        if (b != null) {
+            list.add(b);
+        }
+
+        // Queries over the cost ceiling
+        if (query.getPlan() != null && query.getPlan().isExpensive()) {
+            b = getBulkhead(EXPENSIVE_PREFIX + query.getConnectionName(), cfg.getExpensiveQueryLimit());
+            if (b != null) {
+                list.add(b);
+            }
+        }
+
+        // Sorted to acquire in the same order by all requests
+        Map<String, TableId> tables = new TreeMap<>();
+        for (TableId tid: query.getTables()) {
+            tables.put(tid.toString(), tid);
+        }
+        for (TableId tid: tables.values()) {
+            b = getBulkhead(TABLE_PREFIX + tid, cfg.getTableLimit(tid));
+            if (b != null) {
+                list.add(b);
+            }
+        }
+
+        Permit permit = new Permit();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(cfg.getBulkheadTimeout());
+        for (Bulkhead bh: list) {
+            if (!bh.tryAcquire(deadline - System.nanoTime())) {
+                permit.close();
+                throw new ServiceUnavailableException(cfg.getBulkheadRetryAfter(),
+                        "%s is saturated (limit %d), query %s rejected", bh.getName(), bh.getLimit(), query.getQid().getId());
+            }
+            permit.acquired.add(bh);
+        }
+
+        return permit;
+    }
+
+    public JSONObject getJSON() throws JSONException {
+        JSONObject ret = new JSONObject();
+        for (Bulkhead b: new TreeMap<>(bulkheads).values()) {
+            ret.put(b.getName(), b.getJSON());
+        }
+        return ret;
+    }
+
+    private Bulkhead getBulkhead(String name, int limit) {
+        if (limit <= 0) {
+            return null;
+        }
+        Bulkhead b = bulkheads.get(name);
+        if (b != null && b.getLimit() == limit) {
+            return b;
+        }
+
+        // New or limit changed, permits in use are released to the old one
+        Bulkhead nb = new Bulkhead(name, limit);
+        if (b == null) {
+            b = bulkheads.putIfAbsent(name, nb);
+            return b == null ? nb : b;
+        }
+        bulkheads.replace(name, b, nb);
+        b = bulkheads.get(name);
+        return b;
+    }
+
+    /**
+     * Acquired bulkheads, released on close.
+     */
+    public static class Permit implements AutoCloseable {
+
+        private final List<Bulkhead> acquired = new ArrayList<>();
+
+        @Override
+        public void close() {
+            for (Bulkhead b: acquired) {
+                b.release();
+            }
+            acquired.clear();
+        }
+
+    }
+
+    /**
+     * Single bulkhead with saturation metrics.
+     */
+    @Getter
+    public static class Bulkhead {
+
+        private final String name;
+        private final int limit;
+        private final Semaphore semaphore;
+        private final AtomicInteger waiting = new AtomicInteger();
+        private final AtomicLong acquired = new AtomicLong();
+        private final AtomicLong queued = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final AtomicInteger maxActive = new AtomicInteger();
+
+        public Bulkhead(String name, int limit) {
+            this.name = name;
+            this.limit = limit;
+            this.semaphore = new Semaphore(limit, true);
+        }
+
+        private boolean tryAcquire(long timeoutNanos) {
+            boolean ok = semaphore.tryAcquire();
+            if (!ok) {
+                queued.incrementAndGet();
+                waiting.incrementAndGet();
+                try {
+                    ok = timeoutNanos > 0 && semaphore.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    waiting.decrementAndGet();
+                }
+            }
+            if (ok) {
+                acquired.incrementAndGet();
+                int active = getActive();
+                int max = maxActive.get();
+                while (max < active && !maxActive.compareAndSet(max, active)) {
+                    max = maxActive.get();
+                }
+            } else {
+                rejected.incrementAndGet();
+            }
+            return ok;
+        }
+
+        private void release() {
+            semaphore.release();
+        }
+
+        public int getActive() {
+            return limit - semaphore.availablePermits();
+        }
+
+        public JSONObject getJSON() throws JSONException {
+            JSONObject ret = new JSONObject();
+            ret.put("limit", limit);
+            ret.put("active", getActive());
+            ret.put("waiting", waiting.get());
+            ret.put("maxActive", maxActive.get());
+            ret.put("acquired", acquired.get());
+            ret.put("queued", queued.get());
+            ret.put("rejected", rejected.get());
+            ret.put("saturation", (double) getActive() / limit);
+            return ret;
+        }
+
+    }
+
+}
@@ -1,20 +1,41 @@
 package net.resthub.server.factory;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import lombok.Getter;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j;
 import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheException;
 import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.Element;
+import net.sf.ehcache.event.CacheEventListenerAdapter;
 import net.sf.ehcache.statistics.StatisticsGateway;
+import net.resthub.server.ServerAppConfig;
+import net.resthub.server.cache.CacheKey;
+import net.resthub.server.cache.CcBase;
+import net.resthub.server.cache.FrequencySketch;
+import net.resthub.server.cache.HitStats;
+import net.resthub.server.cache.OffHeapRef;
+import net.resthub.server.cache.OffHeapStore;
+import net.resthub.server.cache.ResultStore;
+import net.resthub.server.cache.TinyLfuPolicy;
 import net.resthub.server.query.Query;
 import net.resthub.server.handler.Handler;
-import net.sf.ehcache.config.CacheConfiguration;
-import org.quartz.Scheduler;
-import org.quartz.SchedulerException;
+import net.resthub.server.handler.HandlerId;
+import net.resthub.server.table.TableId;
+import org.json.JSONException;
+import org.json.JSONObject;
 
 /**
  * CacheManager
@@ -24,65 +45,443 @@ import org.quartz.SchedulerException;
 @Singleton
 public class CacheFactory implements AutoCloseable {
     
-    @Inject
-    private Scheduler scheduler;
+    private static final String REGION_NAME = "data";
+    private static final int SKETCH_CAPACITY = 64 * 1024;
+    private static final int ADMISSION_SAMPLE = 8;
+    
+    private final CacheManager manager = CacheManager.newInstance();
+    private final Cache cache = this.manager.getCache(REGION_NAME);
+    
+    /**
+     * Secondary index: query id to its element keys in the region 
+     * with estimated element weights.
+     */
+    private final ConcurrentMap<String, ConcurrentMap<CacheKey, Long>> keys = new ConcurrentHashMap<>();
+    
+    private final FrequencySketch sketch = new FrequencySketch(SKETCH_CAPACITY);
+    private final TinyLfuPolicy policy = new TinyLfuPolicy(sketch, new TinyLfuPolicy.Weigher() {
+
+        @Override
+        public long weigh(Object key) {
+            if (key instanceof CacheKey) {
+                Map<CacheKey, Long> qkeys = keys.get(((CacheKey) key).getQueryId());
+                if (qkeys != null) {
+                    Long w = qkeys.get((CacheKey) key);
+                    if (w != null) {
+                        return w;
+                    }
+                }
+            }
+            return 0;
+        }
+        
+    });
     
     @Inject
-    private InjectorJobFactory ijf;
+    private QueryFactory qf;
     
-    private final CacheManager manager = CacheManager.newInstance();
-    private final CacheConfiguration defaultConfig = this.manager.getConfiguration().getCacheConfigurations().get("data");
+    private final HitStats hitStats = new HitStats();
+    private final ConcurrentMap<String, HitStats> tableHitStats = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, HitStats> namespaceHitStats = new ConcurrentHashMap<>();
+    
+    @Getter
+    private final OffHeapStore offHeap;
 
-    public CacheFactory() {
+    private final ResultStore results;
+    private final ExecutorService revalidator = Executors.newSingleThreadExecutor();
+    
+    /**
+     * Region heap capacity in bytes, 0 if not bounded by size.
+     */
+    private final long maxHeapBytes;
+
+    @Inject
+    public CacheFactory(ServerAppConfig cfg) throws IOException {
         log.info(String.format("Cache manager is %s: %s", manager.getStatus(), manager.getActiveConfigurationText()));
+        if (cfg.getOffHeapCacheSize() > 0) {
+            this.offHeap = new OffHeapStore(cfg.getOffHeapCacheSize());
+            this.offHeap.setEvictionListener(new OffHeapStore.EvictionListener() {
+
+                @Override
+                public void evicted(String name, Object id) {
+                    // Unless stored again meanwhile
+                    if (!offHeap.contains(name, id)) {
+                        cache.remove(new CacheKey(name, (HandlerId) id));
+                    }
+                }
+                
+            });
+            log.info(String.format("Off-heap cache store enabled: %d bytes", offHeap.getCapacity()));
+        } else {
+            this.offHeap = null;
+        }
+        if (cfg.getResultStorePath() != null) {
+            this.results = new ResultStore(new File(cfg.getResultStorePath()));
+        } else {
+            this.results = null;
+        }
+        this.cache.getCacheEventNotificationService().registerListener(new KeyIndexListener());
+        this.cache.setMemoryStoreEvictionPolicy(policy);
+        this.maxHeapBytes = cache.getCacheConfiguration().getMaxBytesLocalHeap() > 0 ?
+                cache.getCacheConfiguration().getMaxBytesLocalHeap() : 
+                manager.getConfiguration().getMaxBytesLocalHeap();
     }
     
     public void add(Query query) {
-        String name = query.getQid().getId();
-        if (!this.manager.cacheExists(name) && query.isCacheable()) {
-            
-            CacheConfiguration config = defaultConfig.clone();
-            config.setName(name);
-            config.setEternal(query.isEternal());
-            config.setTimeToLiveSeconds(query.getCacheTime());
-            
-            Cache c = new Cache(config);
-            this.manager.addCache(c);
-            
+        if (query.isCacheable()) {
+            keys.putIfAbsent(query.getQid().getId(), new ConcurrentHashMap<CacheKey, Long>());
+        }
+    }
+    
+    /**
+     * Get cached element.
+     * @param query
+     * @param id handler id
+     * @return element or null if not found
+     */
+    public Element getElement(Query query, HandlerId id) {
+        if (!keys.containsKey(query.getQid().getId())) {
+            return null;
+        }
+        return cache.get(new CacheKey(query.getQid().getId(), id));
+    }
+    
+    /**
+     * Record cache access: updates key frequency and hit counters.
+     * @param query
+     * @param id handler id
+     * @param hit true if value was found in cache
+     */
+    public void recordAccess(Query query, HandlerId id, boolean hit) {
+        recordFrequency(query, id);
+        hitStats.record(hit);
+        for (TableId tid: query.getTables()) {
+            getHitStats(tableHitStats, tid.toString()).record(hit);
+            getHitStats(namespaceHitStats, tid.getNamespace()).record(hit);
+        }
+    }
+    
+    /**
+     * Record key access without hit counters, i.e. for requests coalesced
+     * with the load in flight.
+     * @param query
+     * @param id handler id
+     */
+    public void recordFrequency(Query query, HandlerId id) {
+        sketch.increment(new CacheKey(query.getQid().getId(), id));
+    }
+    
+    private static HitStats getHitStats(ConcurrentMap<String, HitStats> map, String name) {
+        HitStats hs = map.get(name);
+        if (hs == null) {
+            hs = new HitStats();
+            HitStats prev = map.putIfAbsent(name, hs);
+            if (prev != null) {
+                hs = prev;
+            }
+        }
+        return hs;
+    }
+    
+    /**
+     * Put value into the shared region with the query cache time as 
+     * element time to live.
+     * @param query
+     * @param id handler id
+     * @param value
+     * @return false if query is not cacheable, removed or value is not admitted
+     */
+    public boolean put(Query query, HandlerId id, CcBase<?> value) {
+        return put(query, id, value, query.isEternal() ? 0 : query.getCacheTime());
+    }
+    
+    /**
+     * Put value into the shared region with the explicit time to live.
+     * @param query
+     * @param id handler id
+     * @param value
+     * @param ttl time to live in seconds, 0 for eternal
+     * @return false if query is not cacheable, removed or value is not admitted
+     */
+    private boolean put(Query query, HandlerId id, CcBase<?> value, int ttl) {
+        ConcurrentMap<CacheKey, Long> qkeys = keys.get(query.getQid().getId());
+        if (qkeys == null) {
+            return false;
+        }
+        
+        CacheKey key = new CacheKey(query.getQid().getId(), id);
+        if (!qkeys.containsKey(key) && !admit(key, value.getWeight())) {
             if (log.isDebugEnabled()) {
-                log.debug(String.format("Cache %s created: eternal = %s, cacheTime = %d", 
-                        c.getName(), query.isEternal(), query.getCacheTime()));
+                log.debug(String.format("Element %s of %s not admitted to cache", id, query.getQid()));
             }
-            
+            return false;
+        }
+        
+        Element el;
+        if (offHeap != null && offHeap.put(key.getQueryId(), id, value)) {
+            el = new Element(key, OffHeapRef.INSTANCE);
+        } else {
+            el = new Element(key, value);
+        }
+        
+        if (ttl == 0) {
+            el.setEternal(true);
+        } else {
+            el.setTimeToLive(ttl);
         }
+        
+        qkeys.put(key, value.getWeight());
+        cache.put(el);
+        return true;
     }
     
-    public Cache get(Query query) {
-        String name = query.getQid().getId();
-        if (this.manager.cacheExists(name)) {
-            return this.manager.getCache(name);
+    /**
+     * Admission filter: new key competes with a sampled victim once the
+     * region heap is full. Updates of the cached keys are always admitted.
+     * @param key candidate key
+     * @param weight candidate size
+     * @return true if the key is admitted
+     */
+    private boolean admit(CacheKey key, long weight) {
+        if (maxHeapBytes <= 0 || cache.getStatistics().getLocalHeapSizeInBytes() + weight <= maxHeapBytes) {
+            return true;
+        }
+        
+        Map.Entry<CacheKey, Long> victim = null;
+        double victimScore = 0;
+        int sampled = 0;
+        
+        // Start from a random query and wrap around
+        int skip = keys.isEmpty() ? 0 : ThreadLocalRandom.current().nextInt(keys.size());
+        Iterator<ConcurrentMap<CacheKey, Long>> it = keys.values().iterator();
+        for (int i = 0; i < skip && it.hasNext(); i++) {
+            it.next();
+        }
+        for (int pass = 0; pass < 2 && sampled < ADMISSION_SAMPLE; pass++) {
+            while (it.hasNext() && sampled < ADMISSION_SAMPLE) {
+                for (Map.Entry<CacheKey, Long> e: it.next().entrySet()) {
+                    double score = policy.score(e.getKey(), e.getValue());
+                    if (victim == null || score < victimScore) {
+                        victim = e;
+                        victimScore = score;
+                    }
+                    if (++sampled >= ADMISSION_SAMPLE) {
+                        break;
+                    }
+                }
+            }
+            it = keys.values().iterator();
         }
-        return null;
+        
+        return victim == null ? 
+                policy.admit(key, weight, null, 0) : 
+                policy.admit(key, weight, victim.getKey(), victim.getValue());
+    }
+    
+    /**
+     * Unwrap cached element value. Element of the value lost by the 
+     * off-heap store is removed from the region.
+     * @param el cache element
+     * @return value or null if value was evicted from the off-heap store
+     */
+    public CcBase<?> getValue(Element el) {
+        Object value = el.getObjectValue();
+        if (value instanceof OffHeapRef) {
+            CacheKey key = (CacheKey) el.getObjectKey();
+            CcBase<?> ret = offHeap == null ? null : offHeap.get(key.getQueryId(), key.getId());
+            if (ret == null) {
+                cache.removeElement(el);
+            }
+            return ret;
+        }
+        return (CcBase<?>) value;
+    }
+    
+    /**
+     * Number of elements cached for the query.
+     * @param query
+     * @return 
+     */
+    public int getSize(Query query) {
+        Map<CacheKey, Long> qkeys = keys.get(query.getQid().getId());
+        return qkeys == null ? 0 : qkeys.size();
+    }
+    
+    public boolean exists(Query query) {
+        return keys.containsKey(query.getQid().getId());
+    }
+    
+    /**
+     * Remove all cached values of the query.
+     * @param query
+     * @return false if query is not cached
+     */
+    public boolean clear(Query query) {
+        Map<CacheKey, Long> qkeys = keys.get(query.getQid().getId());
+        if (qkeys == null) {
+            return false;
+        }
+        clear(query.getQid().getId(), qkeys);
+        if (results != null) {
+            results.removeAll(query.getQid().getMd5());
+        }
+        return true;
     }
     
     public void remove(Query query) {
         String name = query.getQid().getId();
-        if (this.manager.cacheExists(name)) {
+        Map<CacheKey, Long> qkeys = keys.remove(name);
+        if (qkeys != null) {
             
-            this.manager.removeCache(name);
+            clear(name, qkeys);
+            if (results != null) {
+                results.removeAll(query.getQid().getMd5());
+            }
             
             if (log.isDebugEnabled()) {
-                log.debug(String.format("Cache %s removed", name));
+                log.debug(String.format("Cache of %s removed", name));
             }
             
         }
     }
     
+    private void clear(String name, Map<CacheKey, Long> qkeys) {
+        cache.removeAll(new ArrayList<>(qkeys.keySet()));
+        qkeys.clear();
+        if (offHeap != null) {
+            offHeap.removeAll(name);
+        }
+    }
+    
+    /**
+     * Write value to the restart persistent result store.
+     * @param handler
+     * @param value 
+     */
+    public void persist(Handler<?,?> handler, CcBase<?> value) {
+        if (results != null) {
+            Query query = handler.getQuery();
+            long expTime = query.isEternal() ? ResultStore.ETERNAL : 
+                    System.currentTimeMillis() + query.getCacheTimeInMilliseconds();
+            results.write(query.getQid().getMd5(), handler.getStableKey(), value, expTime);
+        }
+    }
+    
+    /**
+     * Restore still valid value from the result store into the region
+     * and refresh it in the background.
+     * @param handler
+     * @return value or null if not found
+     */
+    public CcBase<?> restore(final Handler<?,?> handler) {
+        if (results == null) {
+            return null;
+        }
+        
+        Query query = handler.getQuery();
+        ResultStore.Entry e = results.read(query.getQid().getMd5(), handler.getStableKey());
+        if (e == null) {
+            return null;
+        }
+        
+        int ttl = 0;
+        if (e.getExpTime() != ResultStore.ETERNAL) {
+            ttl = (int) Math.max(1, (e.getExpTime() - System.currentTimeMillis()) / 1000);
+        }
+        put(query, handler.getId(), e.getValue(), ttl);
+        
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("Element %s of %s restored from result store (ttl = %d)", handler.getId(), query.getQid(), ttl));
+        }
+        
+        revalidator.submit(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    // Registered exporter so that concurrent requests coalesce with the load
+                    qf.getExporter(handler).refreshValue();
+                } catch (Exception ex) {
+                    log.warn(String.format("Revalidation of %s failed: %s", handler.getId(), ex.getMessage()));
+                }
+            }
+            
+        });
+        
+        return e.getValue();
+    }
+    
+    public JSONObject getJSON(Query query) throws JSONException {
+        JSONObject ret = new JSONObject();
+        ret.put("size", getSize(query));
+        ret.put("eternal", query.isEternal());
+        ret.put("cacheTime", query.getCacheTime());
+        ret.put("region", new JSONObject(cache.getStatistics()));
+        return ret;
+    }
+    
+    /**
+     * Global cache statistics.
+     * @return
+     * @throws JSONException 
+     */
+    public JSONObject getJSON() throws JSONException {
+        JSONObject ret = new JSONObject();
+        ret.put("queries", keys.size());
+        ret.put("size", cache.getSize());
+        ret.put("hits", hitStats.getJSON());
+        
+        JSONObject adm = new JSONObject();
+        adm.put("policy", policy.getName());
+        adm.put("rejected", policy.getRejectedCount());
+        adm.put("evicted", policy.getEvictedCount());
+        ret.put("admission", adm);
+        
+        JSONObject tables = new JSONObject();
+        for (Map.Entry<String, HitStats> e: tableHitStats.entrySet()) {
+            tables.put(e.getKey(), e.getValue().getJSON());
+        }
+        ret.put("tables", tables);
+        
+        JSONObject namespaces = new JSONObject();
+        for (Map.Entry<String, HitStats> e: namespaceHitStats.entrySet()) {
+            namespaces.put(e.getKey(), e.getValue().getJSON());
+        }
+        ret.put("namespaces", namespaces);
+        
+        if (offHeap != null) {
+            JSONObject oh = new JSONObject();
+            oh.put("size", offHeap.getSize());
+            oh.put("hits", offHeap.getHitCount());
+            oh.put("misses", offHeap.getMissCount());
+            oh.put("evicted", offHeap.getEvictionCount());
+            oh.put("used", offHeap.getUsedBytes());
+            oh.put("capacity", offHeap.getCapacity());
+            ret.put("offHeap", oh);
+        }
+        
+        ret.put("region", new JSONObject(cache.getStatistics()));
+        
+        return ret;
+    }
+    
+    /**
+     * Remove expired results from the result store.
+     */
+    public void cleanResults() {
+        if (results != null) {
+            results.removeExpired();
+        }
+    }
+    
     public void logStats() {
-        for (String name: manager.getCacheNames()) {
-            StatisticsGateway s = manager.getCache(name).getStatistics();
-            log.debug(String.format("Cache %s: hit/miss = %d/%d (%f), heap = %d (%d bytes), disk = %d (%d bytes)", 
-                    name,
+        {
+            StatisticsGateway s = cache.getStatistics();
+            log.debug(String.format("Cache %s (%d queries), admission rejected/evicted = %d/%d", 
+                    cache.getName(), keys.size(), policy.getRejectedCount(), policy.getEvictedCount()));
+            log.debug(String.format("Cache %s (%d queries): hit/miss = %d/%d (%f), heap = %d (%d bytes), disk = %d (%d bytes)", 
+                    cache.getName(),
+                    keys.size(),
                     s.cacheHitCount(),
                     s.cacheMissCount(),
                     s.cacheHitRatio(),
@@ -91,34 +490,59 @@ public class CacheFactory implements AutoCloseable {
                     s.getLocalDiskSize(),
                     s.getLocalDiskSizeInBytes()));
         }
+        if (offHeap != null) {
+            log.debug(String.format("Off-heap store: hit/miss = %d/%d, size = %d, evicted = %d, used = %d of %d bytes",
+                    offHeap.getHitCount(),
+                    offHeap.getMissCount(),
+                    offHeap.getSize(),
+                    offHeap.getEvictionCount(),
+                    offHeap.getUsedBytes(),
+                    offHeap.getCapacity()));
+        }
     }
     
     @Override
     public void close() throws Exception {
         manager.shutdown();
-    }
-    
-    private final Map<Integer, CacheJobData> cacheJobDataMap = new ConcurrentHashMap<>();
-    
-    public void createCacheJob(Handler<?,?> handler, long expTime) {
-        try {         
-            InjectorJobFactory.startCacheJob(scheduler, ijf, handler);
-            cacheJobDataMap.put(handler.getId(), new CacheJobData(handler, expTime));          
-        } catch (SchedulerException ex) {
-            log.error("Error while scheduling cache job", ex);
+        if (results != null) {
+            results.close();
         }
+        revalidator.shutdownNow();
     }
     
-    public CacheJobData getCacheJobData(Integer id) {
-        return cacheJobDataMap.remove(id);
-    }
-    
-    @RequiredArgsConstructor
-    @Getter
-    public static class CacheJobData {
+    /**
+     * Keeps the key index in sync with the region.
+     */
+    private class KeyIndexListener extends CacheEventListenerAdapter {
+
+        @Override
+        public void notifyElementRemoved(Ehcache cache, Element element) throws CacheException {
+            unindex(element);
+        }
+
+        @Override
+        public void notifyElementExpired(Ehcache cache, Element element) {
+            unindex(element);
+        }
+
+        @Override
+        public void notifyElementEvicted(Ehcache cache, Element element) {
+            unindex(element);
+        }
+        
+        private void unindex(Element element) {
+            if (element != null && element.getObjectKey() instanceof CacheKey) {
+                CacheKey key = (CacheKey) element.getObjectKey();
+                Map<CacheKey, Long> qkeys = keys.get(key.getQueryId());
+                if (qkeys != null) {
+                    qkeys.remove(key);
+                }
+                if (offHeap != null) {
+                    offHeap.remove(key.getQueryId(), key.getId());
+                }
+            }
+        }
         
-        private final Handler<?,?> handler;
-        private final long expTime;
     }
     
 }
@@ -1,7 +1,17 @@
 package net.resthub.server.factory;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Blob;
+import java.sql.Clob;
 import java.sql.SQLException;
+import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
@@ -10,10 +20,13 @@ import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
+import javax.inject.Inject;
 import javax.inject.Singleton;
 
 import lombok.extern.log4j.Log4j;
 import net.resthub.model.MdColumn;
+import net.resthub.model.MdType;
+import net.resthub.server.ServerAppConfig;
 import net.resthub.server.cache.CcLob;
 import net.resthub.server.cache.CcCount;
 import net.resthub.server.cache.CcData;
@@ -24,16 +37,18 @@ import net.resthub.server.handler.CountHandler;
 import net.resthub.server.handler.DataHandler;
 import net.resthub.server.handler.PagedHandler;
 import net.resthub.server.query.Query;
+import net.resthub.server.util.RequestTiming;
 
 import org.hibernate.SQLQuery;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
 import org.hibernate.type.BigDecimalType;
 import org.hibernate.type.BlobType;
 import org.hibernate.type.ClobType;
 import org.hibernate.type.DateType;
+import org.hibernate.type.LongType;
 import org.hibernate.type.StringType;
-import org.hibernate.type.TextType;
-import org.hibernate.type.WrapperBinaryType;
 import org.restlet.data.Status;
 
 /**
@@ -46,18 +61,31 @@ public class DataFactory {
     
     private static final String START_ROW_PARAM = "START_ROW___";
     private static final String NUM_ROWS_PARAM  = "NUMBER_OF_ROWS___";
+    private static final int LOB_BUFFER_SIZE = 64 * 1024;
+    private static final int LOB_FETCH_SIZE = 100;
+    
+    /**
+     * LOB cell visitor
+     */
+    public interface LobVisitor {
+        
+        void visit(int row, int column, Object lob) throws Exception;
+        
+    }
+    
+    @Inject
+    private ServerAppConfig cfg;
     
     public CcData getData(final Session session, final DataHandler handler) throws Exception {     
         final Query q = handler.getQuery();
-        final SQLQuery query = getPagedSQLQuery(session, handler);
+        final SQLQuery query = getPagedSQLQuery(session, handler, q.getDataSql(), handler.getProjection() == null ? null : handler.getColumns());
         
-        for (MdColumn c: q.getColumns()) {
+        for (MdColumn c: handler.getColumns()) {
             switch (c.getType()) {
                 case BLOB:
-                    query.addScalar(c.getName(), new BlobType());
-                    break;
                 case CLOB:
-                    query.addScalar(c.getName(), new ClobType());
+                    // LOB length
+                    query.addScalar(c.getName(), new LongType());
                     break;
                 case DATE:
                     query.addScalar(c.getName(), new DateType());
@@ -75,6 +103,7 @@ public class DataFactory {
             log.debug(query.getQueryString());
         }
         
+        final RequestTiming timing = RequestTiming.current();
         ExecutorService executor = Executors.newSingleThreadExecutor();
         Future<CcData> loopRows = executor.submit(
             new Callable<CcData>() {
@@ -83,8 +112,25 @@ public class DataFactory {
                 @SuppressWarnings("unchecked")
                 public CcData call() throws Exception {
                     CcData cc = new CcData();
-                    for (Object o: query.list()) {
-                        cc.addRow(q, o);
+                    long start = System.nanoTime();
+                    ScrollableResults rs = query.scroll(ScrollMode.FORWARD_ONLY);
+                    try {
+                        boolean next = rs.next();
+                        long first = System.nanoTime();
+                        q.getStats().getSqlTime().record(first - start);
+                        while (next) {
+                            Object[] row = rs.get();
+                            cc.addRow(q, row.length == 1 ? row[0] : row);
+                            next = rs.next();
+                        }
+                        long end = System.nanoTime();
+                        q.getStats().getFetchTime().record(end - first);
+                        if (timing != null) {
+                            timing.add(RequestTiming.Stage.EXECUTE, first - start);
+                            timing.add(RequestTiming.Stage.FETCH, end - first);
+                        }
+                    } finally {
+                        rs.close();
                     }
                     return cc;
                 };
@@ -104,46 +150,25 @@ public class DataFactory {
     
     public CcLob getLob(final Session session, final LobHandler handler) throws Exception {     
         final Query q = handler.getQuery();
-        final SQLQuery query = getPagedSQLQuery(session, handler);
-        
+        final SQLQuery query = getLobSQLQuery(session, handler);
         final MdColumn c = handler.getMdColumn();
-        switch (c.getType()) {
-            case BLOB:
-                query.addScalar(c.getName(), new WrapperBinaryType());
-                break;
-            case CLOB:
-                query.addScalar(c.getName(), new TextType());
-                break;
-            default:
-                throw new ClientErrorException(Status.CLIENT_ERROR_BAD_REQUEST, 
-                            "Column %d (%s) expected to be LOB found %s", 
-                              handler.getColumn(), c.getName(), c.getType().name());
-        }
-
-        if (log.isDebugEnabled()) {
-            log.debug(query.getQueryString());
-        }
+        final long limit = cfg.getLobCacheLimit();
         
+        final RequestTiming timing = RequestTiming.current();
         ExecutorService executor = Executors.newSingleThreadExecutor();
         Future<CcLob> fetchData = executor.submit(
             new Callable<CcLob>() {
 
                 @Override
-                @SuppressWarnings("unchecked")
                 public CcLob call() throws Exception {
-                    CcLob cc = new CcLob();
-                    Object o = query.uniqueResult();
-                    if (o != null) {
-                        switch (c.getType()) {
-                            case CLOB:
-                                cc.setValue((String) o);
-                                break;
-                            case BLOB:
-                                cc.setValue((Byte[]) o);
-                                break;
-                        }
+                    long start = System.nanoTime();
+                    Object lob = query.uniqueResult();
+                    long elapsed = System.nanoTime() - start;
+                    q.getStats().getSqlTime().record(elapsed);
+                    if (timing != null) {
+                        timing.add(RequestTiming.Stage.EXECUTE, elapsed);
                     }
-                    return cc;
+                    return readLob(lob, c.getType(), limit);
                 };
             });
 
@@ -159,8 +184,206 @@ public class DataFactory {
         
     }
     
+    /**
+     * Stream LOB directly from the database without holding it in memory.
+     * BLOB is written from offset (0 based) up to length bytes, CLOB is written 
+     * as a whole in UTF-8. Query execution is bound by the query timeout.
+     * @param session
+     * @param handler
+     * @param offset
+     * @param length
+     * @param out
+     * @throws Exception 
+     */
+    public void writeLob(final Session session, final LobHandler handler, long offset, long length, OutputStream out) throws Exception {
+        final Query q = handler.getQuery();
+        final SQLQuery query = getLobSQLQuery(session, handler);
+        query.setTimeout(q.getTimeOut());
+        
+        long start = System.nanoTime();
+        Object lob = query.uniqueResult();
+        q.getStats().getSqlTime().record(System.nanoTime() - start);
+        
+        writeLob(lob, handler.getMdColumn().getType(), offset, length, out);
+    }
+    
+    /**
+     * Visit all LOB cells of the page (or the whole result if not paged) in a 
+     * single query execution. LOB columns to visit are defined by the handler.
+     * Cells are visited in the row order, LOB locators are valid only 
+     * within the visit method.
+     * @param session
+     * @param handler
+     * @param visitor
+     * @throws Exception 
+     */
+    public void visitLobs(final Session session, final LobHandler handler, final LobVisitor visitor) throws Exception {
+        final Query q = handler.getQuery();
+        final SQLQuery query = getPagedSQLQuery(session, handler);
+        
+        List<Integer> cols = handler.getLobColumns();
+        for (Integer col: cols) {
+            MdColumn c = q.getColumns().get(col);
+            switch (c.getType()) {
+                case BLOB:
+                    query.addScalar(c.getName(), new BlobType());
+                    break;
+                case CLOB:
+                    query.addScalar(c.getName(), new ClobType());
+                    break;
+            }
+        }
+        
+        query.setTimeout(q.getTimeOut());
+        query.setFetchSize(q.getRowsLimit() < LOB_FETCH_SIZE ? q.getRowsLimit() : LOB_FETCH_SIZE);
+        
+        if (log.isDebugEnabled()) {
+            log.debug(query.getQueryString());
+        }
+        
+        ScrollableResults rs = query.scroll(ScrollMode.FORWARD_ONLY);
+        try {
+            int row = 0;
+            while (rs.next()) {
+                for (int i = 0; i < cols.size(); i++) {
+                    Object o = rs.get(i);
+                    if (o != null) {
+                        visitor.visit(row, cols.get(i), o);
+                    }
+                }
+                row++;
+            }
+        } finally {
+            rs.close();
+        }
+    }
+    
+    /**
+     * Read LOB value into memory if it does not exceed the limit, otherwise 
+     * only length is set and value is marked as streamed.
+     * @param o LOB locator (Blob or Clob), can be null
+     * @param type column type
+     * @param limit max length to read
+     * @return
+     * @throws SQLException 
+     */
+    public CcLob readLob(Object o, MdType type, long limit) throws SQLException {
+        CcLob cc = new CcLob();
+        if (o != null) {
+            switch (type) {
+                case CLOB:
+                    Clob clob = (Clob) o;
+                    cc.setLength(clob.length());
+                    if (cc.getLength() <= limit) {
+                        cc.setValue(clob.getSubString(1, (int) cc.getLength()));
+                    } else {
+                        cc.setStreamed(true);
+                    }
+                    break;
+                case BLOB:
+                    Blob blob = (Blob) o;
+                    cc.setLength(blob.length());
+                    if (cc.getLength() <= limit) {
+                        cc.setValue(blob.getBytes(1, (int) cc.getLength()));
+                    } else {
+                        cc.setStreamed(true);
+                    }
+                    break;
+            }
+        }
+        return cc;
+    }
+    
+    /**
+     * Copy LOB to the output stream. BLOB is written from offset (0 based) 
+     * up to length bytes, CLOB is written as a whole in UTF-8.
+     * @param o LOB locator (Blob or Clob), can be null
+     * @param type column type
+     * @param offset
+     * @param length
+     * @param out
+     * @throws SQLException
+     * @throws IOException 
+     */
+    public void writeLob(Object o, MdType type, long offset, long length, OutputStream out) throws SQLException, IOException {
+        if (o == null) {
+            return;
+        }
+        
+        switch (type) {
+            case BLOB:
+                
+                if (length > 0) {
+                    try (InputStream in = ((Blob) o).getBinaryStream(offset + 1, length)) {
+                        byte[] buf = new byte[LOB_BUFFER_SIZE];
+                        int n;
+                        while ((n = in.read(buf)) != -1) {
+                            out.write(buf, 0, n);
+                        }
+                    }
+                }
+                break;
+                
+            case CLOB:
+                
+                Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+                try (Reader in = ((Clob) o).getCharacterStream()) {
+                    char[] buf = new char[LOB_BUFFER_SIZE];
+                    int n;
+                    while ((n = in.read(buf)) != -1) {
+                        writer.write(buf, 0, n);
+                    }
+                }
+                writer.flush();
+                break;
+                
+        }
+        
+        out.flush();
+    }
+    
+    private SQLQuery getLobSQLQuery(final Session session, final LobHandler handler) throws SQLException {
+        final SQLQuery query = getPagedSQLQuery(session, handler);
+        
+        final MdColumn c = handler.getMdColumn();
+        switch (c.getType()) {
+            case BLOB:
+                query.addScalar(c.getName(), new BlobType());
+                break;
+            case CLOB:
+                query.addScalar(c.getName(), new ClobType());
+                break;
+            default:
+                throw new ClientErrorException(Status.CLIENT_ERROR_BAD_REQUEST, 
+                            "Column %d (%s) expected to be LOB found %s", 
+                              handler.getColumn(), c.getName(), c.getType().name());
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug(query.getQueryString());
+        }
+        
+        return query;
+    }
+    
     private SQLQuery getPagedSQLQuery(final Session session, 
                                       final PagedHandler<?,?> handler) throws SQLException {
+        return getPagedSQLQuery(session, handler, handler.getQuery().getSql(), null);
+    }
+    
+    /**
+     * Paged query.
+     * @param session
+     * @param handler
+     * @param qsql query SQL
+     * @param columns columns to select, null for all
+     * @return
+     * @throws SQLException 
+     */
+    private SQLQuery getPagedSQLQuery(final Session session, 
+                                      final PagedHandler<?,?> handler,
+                                      final String qsql,
+                                      final List<MdColumn> columns) throws SQLException {
         final Query q = handler.getQuery();
         
         Integer perPage = handler.getPerPage();
@@ -172,16 +395,25 @@ public class DataFactory {
         
         Integer startRow = perPage * (page - 1) + 1;
         
-        if (handler instanceof LobHandler) {
+        if (handler instanceof LobHandler && ((LobHandler) handler).getRow() != null) {
             startRow = startRow + ((LobHandler) handler).getRow();
             perPage = 1;
         }
         
-        StringBuilder sb = new StringBuilder();
-        sb.append("select * from "
+        StringBuilder sb = new StringBuilder("select ");
+        if (columns == null) {
+            sb.append("*");
+        } else {
+            String sep = "";
+            for (MdColumn c: columns) {
+                sb.append(sep).append("\"").append(c.getName()).append("\"");
+                sep = ", ";
+            }
+        }
+        sb.append(" from "
                 + "  (select ROWNUM ROW_NUMBER___, A.* from (");
 
-        sb.append(q.getSql())
+        sb.append(qsql)
           .append(") A")
           .append("  where ROWNUM < (:").append(START_ROW_PARAM).append(" + :").append(NUM_ROWS_PARAM).append(") ")
           .append(") where ROW_NUMBER___ >= :").append(START_ROW_PARAM);
@@ -214,6 +446,7 @@ public class DataFactory {
             log.debug(query.getQueryString());
         }
         
+        final RequestTiming timing = RequestTiming.current();
         ExecutorService executor = Executors.newSingleThreadExecutor();
         Future<CcCount> func = executor.submit(
             new Callable<CcCount>() {
@@ -221,7 +454,13 @@ public class DataFactory {
                 @Override
                 public CcCount call() throws Exception {
                     CcCount cc = new CcCount();
+                    long start = System.nanoTime();
                     cc.setValue(((BigDecimal) query.uniqueResult()).longValue());
+                    long elapsed = System.nanoTime() - start;
+                    q.getStats().getSqlTime().record(elapsed);
+                    if (timing != null) {
+                        timing.add(RequestTiming.Stage.EXECUTE, elapsed);
+                    }
                     return cc;
                 }
                 
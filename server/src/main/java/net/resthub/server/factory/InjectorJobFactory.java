@@ -3,9 +3,6 @@ package net.resthub.server.factory;
 import com.google.inject.Injector;
 import javax.inject.Inject;
 import lombok.extern.log4j.Log4j;
-import net.resthub.server.cache.CacheJob;
-import net.resthub.server.handler.Handler;
-import net.resthub.server.query.QueryStats;
 import net.resthub.server.query.UpdateJob;
 import org.quartz.Job;
 import org.quartz.JobBuilder;
@@ -49,23 +46,5 @@ public class InjectorJobFactory implements JobFactory {
         scheduler.scheduleJob(jobDetail, trigger);
 
     }
-    
-    //private static final String CACHE_JOB_GROUP_ID = "resthubCacheJobs";
-    public static final String HANDLER_ID_ATTR = "id";
-
-    public static void startCacheJob(Scheduler scheduler, InjectorJobFactory jobFactory, Handler<?,?> qh) throws SchedulerException {
-        QueryStats stats = qh.getQuery().getStats();
-        long cacheTime = stats.getCacheTime();
-
-        JobDetail jobDetail = JobBuilder.newJob(CacheJob.class).build();
-        jobDetail.getJobDataMap().put(HANDLER_ID_ATTR, qh.getId());
-        Trigger trigger = TriggerBuilder.newTrigger().withSchedule(
-                SimpleScheduleBuilder.simpleSchedule().withIntervalInMilliseconds(qh.getQuery().getCacheTimeInMilliseconds() - cacheTime).withRepeatCount(1))
-                .build();
 
-        log.debug(String.format("JOB time: (%d)", qh.getQuery().getCacheTimeInMilliseconds() - cacheTime));
-        scheduler.setJobFactory(jobFactory);
-        scheduler.scheduleJob(jobDetail, trigger);
-
-    }
 }
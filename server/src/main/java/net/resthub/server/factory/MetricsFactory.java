@@ -0,0 +1,285 @@
+package net.resthub.server.factory;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import net.resthub.server.ServerAppConfig;
+import net.resthub.server.query.LatencyHistogram;
+import net.resthub.server.query.Query;
+import net.resthub.server.query.QueryStats;
+import net.resthub.server.table.TableId;
+
+/**
+ * MetricsFactory: query statistics aggregated per query, table, namespace 
+ * and connection in Prometheus text exposition format. Statistics of removed
+ * queries are kept in running totals so that counters and histograms do
+ * not go down when queries expire or are evicted. Per query series are
+ * bounded to the registered queries with the most requests as query ids
+ * are unbounded.
+ * @author valdo
+ */
+@Singleton
+public class MetricsFactory {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4";
+
+    private static final String PREFIX = "resthub_";
+    private static final String[] HISTOGRAMS = { "sql", "fetch", "conversion", "total" };
+    private static final String[] HISTOGRAM_HELP = {
+        "Statement execution time till the first row",
+        "Time to fetch the rest of rows",
+        "Time to convert data to the requested media type",
+        "Request handling time end-to-end"
+    };
+    private static final String[] COUNTERS = { "requests", "cache_hits", "coalesced", "timeouts", "sql_errors" };
+    private static final String[] COUNTER_HELP = {
+        "Data requests",
+        "Requests served from cache",
+        "Requests served by a concurrent load",
+        "Statements timed out",
+        "Failed statements"
+    };
+    private static final String[] GAUGES = { "sql_texts" };
+    private static final String[] GAUGE_HELP = {
+        "Distinct SQL texts sent to the database"
+    };
+    private static final long[] BOUNDS = LatencyHistogram.getBounds();
+
+    @Inject
+    private QueryFactory qf;
+
+    @Inject
+    private ServerAppConfig cfg;
+
+    /**
+     * Running totals of removed queries.
+     */
+    private final Map<String, Aggregate> tableTotals = new TreeMap<>();
+    private final Map<String, Aggregate> namespaceTotals = new TreeMap<>();
+    private final Map<String, Aggregate> connectionTotals = new TreeMap<>();
+
+    /**
+     * Removed queries still in the registry, not to be counted twice.
+     */
+    private final Set<Query> retired = Collections.newSetFromMap(new IdentityHashMap<Query, Boolean>());
+
+    /**
+     * Add statistics of the query to the running totals. To be called
+     * before the query is removed from the registry.
+     * @param q
+     */
+    public synchronized void retire(Query q) {
+        if (retired.add(q)) {
+            add(tableTotals, namespaceTotals, connectionTotals, q, true);
+        }
+    }
+
+    /**
+     * Write all metrics.
+     * @return Prometheus text format
+     */
+    public String getPrometheus() {
+        Map<String, Aggregate> tables = new TreeMap<>();
+        Map<String, Aggregate> namespaces = new TreeMap<>();
+        Map<String, Aggregate> connections = new TreeMap<>();
+        Map<String, Aggregate> queries = new TreeMap<>();
+        int top = cfg.getMetricsTopQueries();
+        PriorityQueue<Ranked> ranked = new PriorityQueue<>(Math.max(1, top + 1));
+
+        synchronized (this) {
+            copy(tableTotals, tables);
+            copy(namespaceTotals, namespaces);
+            copy(connectionTotals, connections);
+
+            Collection<Query> live = qf.getQueries();
+            for (Query q: live) {
+                if (!retired.contains(q)) {
+                    add(tables, namespaces, connections, q, false);
+                    if (top > 0) {
+                        ranked.add(new Ranked(q, q.getStats().getCount().get()));
+                        if (ranked.size() > top) {
+                            ranked.poll();
+                        }
+                    }
+                }
+            }
+
+            // Retired queries gone from the registry
+            Set<Query> liveSet = Collections.newSetFromMap(new IdentityHashMap<Query, Boolean>());
+            liveSet.addAll(live);
+            for (Iterator<Query> it = retired.iterator(); it.hasNext();) {
+                if (!liveSet.contains(it.next())) {
+                    it.remove();
+                }
+            }
+        }
+
+        for (Ranked r: ranked) {
+            get(queries, r.query.getQid().getId()).add(r.query.getStats(), false);
+        }
+
+        StringBuilder sb = new StringBuilder();
+        write(sb, "query", "query", queries);
+        write(sb, "table", "table", tables);
+        write(sb, "namespace", "namespace", namespaces);
+        write(sb, "connection", "connection", connections);
+        return sb.toString();
+    }
+
+    private static void add(Map<String, Aggregate> tables, Map<String, Aggregate> namespaces,
+            Map<String, Aggregate> connections, Query q, boolean totals) {
+        QueryStats stats = q.getStats();
+        get(connections, q.getConnectionName()).add(stats, totals);
+
+        Set<String> nss = new HashSet<>();
+        for (TableId tid: q.getTables()) {
+            get(tables, tid.toString()).add(stats, totals);
+            nss.add(tid.getNamespace());
+        }
+        for (String ns: nss) {
+            get(namespaces, ns).add(stats, totals);
+        }
+    }
+
+    private static void copy(Map<String, Aggregate> from, Map<String, Aggregate> to) {
+        for (Map.Entry<String, Aggregate> e: from.entrySet()) {
+            get(to, e.getKey()).add(e.getValue());
+        }
+    }
+
+    private static Aggregate get(Map<String, Aggregate> map, String key) {
+        Aggregate a = map.get(key);
+        if (a == null) {
+            a = new Aggregate();
+            map.put(key, a);
+        }
+        return a;
+    }
+
+    private static void write(StringBuilder sb, String level, String label, Map<String, Aggregate> aggregates) {
+        for (int h = 0; h < HISTOGRAMS.length; h++) {
+            String name = PREFIX + level + "_" + HISTOGRAMS[h] + "_seconds";
+            sb.append("# HELP ").append(name).append(" ").append(HISTOGRAM_HELP[h]).append(" per ").append(level).append("\n");
+            sb.append("# TYPE ").append(name).append(" histogram\n");
+            for (Map.Entry<String, Aggregate> e: aggregates.entrySet()) {
+                String l = label + "=\"" + escape(e.getKey()) + "\"";
+                LatencyHistogram hist = e.getValue().histograms.get(h);
+                long cumulative = 0;
+                for (int i = 0; i < hist.getBucketCount(); i++) {
+                    cumulative += hist.getBucket(i);
+                    String le = i < BOUNDS.length ? seconds(BOUNDS[i]) : "+Inf";
+                    sb.append(name).append("_bucket{").append(l).append(",le=\"").append(le).append("\"} ").append(cumulative).append("\n");
+                }
+                sb.append(name).append("_sum{").append(l).append("} ").append(seconds(hist.getSum())).append("\n");
+                sb.append(name).append("_count{").append(l).append("} ").append(hist.getCount()).append("\n");
+            }
+        }
+        for (int c = 0; c < COUNTERS.length; c++) {
+            String name = PREFIX + level + "_" + COUNTERS[c] + "_total";
+            sb.append("# HELP ").append(name).append(" ").append(COUNTER_HELP[c]).append(" per ").append(level).append("\n");
+            sb.append("# TYPE ").append(name).append(" counter\n");
+            for (Map.Entry<String, Aggregate> e: aggregates.entrySet()) {
+                sb.append(name).append("{").append(label).append("=\"").append(escape(e.getKey())).append("\"} ")
+                    .append(e.getValue().counters[c]).append("\n");
+            }
+        }
+        for (int g = 0; g < GAUGES.length; g++) {
+            String name = PREFIX + level + "_" + GAUGES[g];
+            sb.append("# HELP ").append(name).append(" ").append(GAUGE_HELP[g]).append(" per ").append(level).append("\n");
+            sb.append("# TYPE ").append(name).append(" gauge\n");
+            for (Map.Entry<String, Aggregate> e: aggregates.entrySet()) {
+                sb.append(name).append("{").append(label).append("=\"").append(escape(e.getKey())).append("\"} ")
+                    .append(e.getValue().gauges[g]).append("\n");
+            }
+        }
+    }
+
+    private static String seconds(long nanos) {
+        return BigDecimal.valueOf(nanos, 9).stripTrailingZeros().toPlainString();
+    }
+
+    private static String escape(String value) {
+        return value == null ? "" : value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * Query with the request count taken once, for ranking.
+     */
+    private static class Ranked implements Comparable<Ranked> {
+
+        private final Query query;
+        private final long count;
+
+        public Ranked(Query query, long count) {
+            this.query = query;
+            this.count = count;
+        }
+
+        @Override
+        public int compareTo(Ranked other) {
+            return Long.compare(count, other.count);
+        }
+
+    }
+
+    /**
+     * Statistics of one or more queries.
+     */
+    private static class Aggregate {
+
+        private final List<LatencyHistogram> histograms = new ArrayList<>();
+        private final long[] counters = new long[COUNTERS.length];
+        private final long[] gauges = new long[GAUGES.length];
+
+        public Aggregate() {
+            for (int i = 0; i < HISTOGRAMS.length; i++) {
+                histograms.add(new LatencyHistogram());
+            }
+        }
+
+        /**
+         * Add query statistics.
+         * @param stats
+         * @param totals true for running totals: gauges are not kept
+         */
+        public void add(QueryStats stats, boolean totals) {
+            histograms.get(0).add(stats.getSqlTime());
+            histograms.get(1).add(stats.getFetchTime());
+            histograms.get(2).add(stats.getConversionTime());
+            histograms.get(3).add(stats.getTotalTime());
+            counters[0] += stats.getCount().get();
+            counters[1] += stats.getCached().get();
+            counters[2] += stats.getCoalesced().get();
+            counters[3] += stats.getTimeouts().get();
+            counters[4] += stats.getSqlErrors().get();
+            if (!totals) {
+                gauges[0] += stats.getSqlTexts();
+            }
+        }
+
+        public void add(Aggregate other) {
+            for (int i = 0; i < histograms.size(); i++) {
+                histograms.get(i).add(other.histograms.get(i));
+            }
+            for (int i = 0; i < counters.length; i++) {
+                counters[i] += other.counters[i];
+            }
+            for (int i = 0; i < gauges.length; i++) {
+                gauges[i] += other.gauges[i];
+            }
+        }
+
+    }
+
+}
@@ -1,25 +1,34 @@
 package net.resthub.server.factory;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j;
 import net.resthub.exception.QueryException;
+import net.resthub.server.ServerAppConfig;
+import net.resthub.server.cache.PrefetchScheduler;
+import net.resthub.server.cache.RefreshScheduler;
 import net.resthub.server.exporter.Exporter;
 import net.resthub.server.handler.Handler;
+import net.resthub.server.handler.HandlerId;
+import net.resthub.server.query.CostEstimator;
 import net.resthub.server.query.Query;
 import net.resthub.server.query.QueryId;
 import net.resthub.server.query.QueryMap;
+import net.resthub.server.query.QueryStore;
 import net.resthub.server.table.TableId;
 
 import org.restlet.resource.ResourceException;
@@ -31,7 +40,7 @@ import org.restlet.resource.ResourceException;
  */
 @Log4j
 @Singleton
-public class QueryFactory {
+public class QueryFactory implements AutoCloseable {
 
     private static final int TIME_TO_LIVE_SECS = 60 * 60;
     
@@ -41,47 +50,287 @@ public class QueryFactory {
     @Inject
     private ResourceFactory rf;
     
-    private final QueryMap queries = new QueryMap();
+    @Inject
+    private CostEstimator estimator;
+    
+    @Inject
+    private PrefetchScheduler prefetcher;
+    
+    @Inject
+    private RefreshScheduler refresher;
+    
+    @Inject
+    private MetricsFactory metrics;
+    
+    private final ServerAppConfig cfg;
+    
+    private final QueryMap queries;
+    
+    private final QueryStore store;
+    
+    /**
+     * Stored queries not yet restored: by id and by md5.
+     */
+    private final Map<String, QueryStore.Entry> stored = new ConcurrentHashMap<>();
+    private final Map<String, String> storedIds = new ConcurrentHashMap<>();
+    
+    /**
+     * Queries with lifted literals: by id and ids by md5 of the SQL with literals.
+     */
+    private final Map<String, Variant> variants = new ConcurrentHashMap<>();
+    private final Map<String, String> variantIds = new ConcurrentHashMap<>();
 
+    @Inject
+    public QueryFactory(ServerAppConfig cfg) throws IOException {
+        this.cfg = cfg;
+        this.queries = new QueryMap(cfg.getMaxQueries());
+        if (cfg.getQueryStorePath() != null) {
+            this.store = new QueryStore(new File(cfg.getQueryStorePath()));
+            for (QueryStore.Entry e: store.getEntries()) {
+                stored.put(e.getId(), e);
+                storedIds.put(e.getMd5(), e.getId());
+                advanceUID(e.getId());
+            }
+        } else {
+            this.store = null;
+        }
+    }
+    
     public Collection<Query> getQueries() {
         return queries.getQueries();
     }
 
     public Query getQuery(String id) {
-        return queries.get(id);
+        Variant v = variants.get(id);
+        if (v != null) {
+            v.lastAccess = System.currentTimeMillis();
+            id = v.getQueryId();
+        }
+        Query q = queries.get(id);
+        if (q == null && stored.containsKey(id)) {
+            q = restoreQuery(id);
+        }
+        return q;
+    }
+
+    /**
+     * Registered query without recording the access and without restoring
+     * it from the store, for background tasks.
+     * @param id query id
+     * @return query or null if not registered
+     */
+    public Query peekQuery(String id) {
+        return queries.peek(id);
+    }
+
+    /**
+     * Literal values of the query id.
+     * @param id query id
+     * @return literal values by parameter name, empty if the query is not
+     * a variant with lifted literals
+     */
+    public Map<String, String> getLiterals(String id) {
+        Variant v = variants.get(id);
+        return v == null ? Collections.<String, String>emptyMap() : v.getLiterals();
     }
 
     public String createQuery(String sql) throws QueryException {
         // Create id and search for existing query
-        QueryId qid = rf.create(sql);
+        QueryId qid = rf.create(sql, cfg.isParameterizeLiterals());
+        return qid.getLiterals().isEmpty() ? createQuery(qid) : createVariant(qid);
+    }
+    
+    private String createQuery(QueryId qid) throws QueryException {
         String id = queries.getId(qid.getMd5());
         if (id != null) {
             return id;
         }
+        
+        // Search for stored query
+        id = storedIds.get(qid.getMd5());
+        if (id != null && restoreQuery(id) != null) {
+            return id;
+        }
 
-        // Not found. Create new query and add to list
+        // Not found. Create new query, estimate its cost and add to list
         Query q = rf.create(qid);
-        queries.add(q);
+        q.setPlan(estimator.estimate(q.getConnectionName(), q.getSql(), q.getTables()));
+        addQuery(q);
+        
+        if (store != null) {
+            store.add(qid, System.currentTimeMillis());
+        }
+        
+        // Warm up the cache ahead of the first request
+        prefetcher.prime(q, Collections.<String, String>emptyMap());
+
+        return qid.getId();
+    }
+    
+    /**
+     * Query with literals lifted into parameters. Variants differing in
+     * literal values only share the same query (i.e. its columns, cache
+     * and cursor) and bind their own values.
+     * @param qid
+     * @return variant id
+     * @throws QueryException 
+     */
+    private String createVariant(QueryId qid) throws QueryException {
+        String id = variantIds.get(qid.getLiteralMd5());
+        if (id != null && variants.containsKey(id)) {
+            return id;
+        }
+        
+        // Search for stored variant
+        id = storedIds.get(qid.getLiteralMd5());
+        if (id != null && restoreQuery(id) != null) {
+            return id;
+        }
+        
+        id = nextUID();
+        Variant v = addVariant(id, qid);
+        
+        if (store != null) {
+            store.add(id, qid.getLiteralMd5(), qid.getLiteralSql(), System.currentTimeMillis());
+        }
+        
+        // Warm up the cache ahead of the first request
+        prefetcher.prime(queries.get(v.getQueryId()), v.getLiterals());
+        
+        return id;
+    }
+    
+    private Variant addVariant(String id, QueryId qid) throws QueryException {
+        Variant v = new Variant(id, qid.getLiteralMd5(), createQuery(qid), qid.getLiterals());
+        variants.put(id, v);
+        variantIds.put(v.getMd5(), id);
+        
+        if (variants.size() > queries.getCapacity()) {
+            Variant lru = v;
+            for (Variant other: variants.values()) {
+                if (other.lastAccess < lru.lastAccess) {
+                    lru = other;
+                }
+            }
+            
+            if (log.isDebugEnabled()) {
+                log.debug(String.format("removing query %s due to registry capacity (%d)", lru.getId(), queries.getCapacity()));
+            }
+            
+            removeQuery(lru.getId());
+        }
+        
+        return v;
+    }
+    
+    private void addQuery(Query q) {
+        List<String> evicted = queries.add(q);
 
         // Create query cache
         if (q.isCacheable()) {
             ccf.add(q);
         }
-
-        return qid.getId();
+        
+        for (String id: evicted) {
+            
+            if (log.isDebugEnabled()) {
+                log.debug(String.format("removing query %s due to registry capacity (%d)", id, queries.getCapacity()));
+            }
+            
+            removeQuery(id);
+        }
     }
     
-    private final Map<Integer, Exporter<?>> exporters = new ConcurrentHashMap<>();
+    /**
+     * Restore stored query: parse, describe and estimate it with the stored id.
+     * Database round trips are done outside of the lock, concurrent restores 
+     * of the same query publish the first one.
+     * @param id
+     * @return restored query or null if it is not valid anymore
+     */
+    private Query restoreQuery(String id) {
+        Query q = getRestored(id);
+        if (q != null) {
+            return q;
+        }
+        
+        QueryStore.Entry e = stored.get(id);
+        if (e == null) {
+            // Restored meanwhile or removed
+            return getRestored(id);
+        }
+        
+        try {
+            
+            QueryId qid = rf.create(e.getSql(), cfg.isParameterizeLiterals());
+            if (!qid.getLiterals().isEmpty()) {
+                createQuery(qid);
+                return publishRestored(id, e, qid, null);
+            } else {
+                q = rf.create(rf.create(e.getSql(), e.getId()));
+                q.setPlan(estimator.estimate(q.getConnectionName(), q.getSql(), q.getTables()));
+                return publishRestored(id, e, null, q);
+            }
+            
+        } catch (Exception ex) {
+            log.warn(String.format("Stored query %s can not be restored: %s", id, ex.getMessage()));
+            synchronized (this) {
+                store.remove(id);
+                stored.remove(id);
+                storedIds.remove(e.getMd5());
+            }
+            return null;
+        }
+    }
+    
+    /**
+     * Add restored query or variant unless restored or removed meanwhile.
+     * @param id
+     * @param e store entry
+     * @param variant variant query id or null
+     * @param q query or null for variant
+     * @return registered query or null if removed meanwhile
+     * @throws QueryException 
+     */
+    private synchronized Query publishRestored(String id, QueryStore.Entry e, QueryId variant, Query q) throws QueryException {
+        Query ret = getRestored(id);
+        if (ret == null && stored.containsKey(id)) {
+            
+            if (variant != null) {
+                ret = queries.get(addVariant(id, variant).getQueryId());
+            } else {
+                addQuery(q);
+                ret = q;
+            }
+            
+            if (log.isDebugEnabled()) {
+                log.debug(String.format("query %s restored", id));
+            }
+            
+        }
+        
+        stored.remove(id);
+        storedIds.remove(e.getMd5());
+        
+        return ret;
+    }
+    
+    private Query getRestored(String id) {
+        Variant v = variants.get(id);
+        return queries.get(v == null ? id : v.getQueryId());
+    }
+    
+    private final Map<HandlerId, Exporter<?>> exporters = new ConcurrentHashMap<>();
     
     @SuppressWarnings("unchecked")
     public <E extends Exporter<?>, H extends Handler<?, E>> E getExporter(H handler) throws ResourceException {
-        Integer id = handler.getId();
+        HandlerId id = handler.getId();
         
         E de = (E) exporters.get(id);
         if (de != null) {
 
             if (log.isDebugEnabled()) {
-                log.debug(String.format("got DataExporter from map %d for %d", de.hashCode(), id));
+                log.debug(String.format("got DataExporter from map %d for %s", de.hashCode(), id));
             }
             
             return de;
@@ -123,9 +372,37 @@ public class QueryFactory {
             log.debug(String.format("removing query: %s", id));
         }
         
+        Variant v = variants.remove(id);
+        if (v != null) {
+            variantIds.remove(v.getMd5());
+            if (store != null) {
+                store.remove(id);
+            }
+            return true;
+        }
+        
+        // Variants of the query
+        for (Variant other: variants.values()) {
+            if (other.getQueryId().equals(id)) {
+                removeQuery(other.getId());
+            }
+        }
+        
         Query q = queries.get(id);
         if (q != null) {
             ccf.remove(q);
+            refresher.cancel(id);
+            metrics.retire(q);
+        }
+        
+        if (store != null) {
+            store.remove(id);
+        }
+        
+        QueryStore.Entry e = stored.remove(id);
+        if (e != null) {
+            storedIds.remove(e.getMd5());
+            return true;
         }
         
         return queries.remove(id);
@@ -135,32 +412,46 @@ public class QueryFactory {
         for (String qid: getQueries(id)) {
             removeQuery(qid);
         }
+
     }
 
     public Collection<String> getQueries(TableId id) {
-        Set<String> qids = new HashSet<>();
-        for (Query q: queries.getQueries()) {
-            if (q.getTables().contains(id)) {
-                qids.add(q.getQid().getId());
-            }
-        }
-        return qids;
+        return queries.getQueries(id);
     }
     
     public synchronized void cleanQueries() {
         List<String> toRemove = new ArrayList<>();
-        Date threshold = new Date(new Date().getTime() - (TIME_TO_LIVE_SECS * 1000));
+        long threshold = System.currentTimeMillis() - (TIME_TO_LIVE_SECS * 1000);
         
         for (Query q: queries.getQueries()) {
             String id = q.getQid().getId();
-            Date lastAccess = queries.getLastAccess(id);
-            if (lastAccess.before(threshold)) {
+            Long lastAccess = queries.getLastAccess(id);
+            if (lastAccess == null) {
+                continue;
+            }
+            if (lastAccess < threshold) {
                 toRemove.add(id);
                 
                 if (log.isDebugEnabled()) {
-                    log.debug(String.format("removing query %s due to expired access time: %s", id, lastAccess));
+                    log.debug(String.format("removing query %s due to expired access time: %s", id, new Date(lastAccess)));
                 }
                 
+            } else if (store != null) {
+                store.access(id, lastAccess);
+            }
+        }
+        
+        for (Variant v: variants.values()) {
+            if (v.lastAccess < threshold) {
+                toRemove.add(v.getId());
+            } else if (store != null) {
+                store.access(v.getId(), v.lastAccess);
+            }
+        }
+        
+        for (QueryStore.Entry e: stored.values()) {
+            if (e.getLastAccess() < threshold) {
+                toRemove.add(e.getId());
             }
         }
         
@@ -168,11 +459,54 @@ public class QueryFactory {
             removeQuery(id);
         }
         
+        if (store != null) {
+            store.compactIfNeeded();
+        }
+        
     }
     
     private static final AtomicLong UID = new AtomicLong(new Date().getTime());
+    
+    /**
+     * Make sure new ids do not collide with the restored one.
+     * @param id
+     */
+    private static void advanceUID(String id) {
+        try {
+            long value = Long.parseLong(id, 16);
+            long current = UID.get();
+            while (current < value && !UID.compareAndSet(current, value)) {
+                current = UID.get();
+            }
+        } catch (NumberFormatException ex) {
+            // Not generated id
+        }
+    }
 
     public static String nextUID() {
         return Long.toHexString(UID.incrementAndGet());
     }
+    
+    /**
+     * Query with literal values bound.
+     */
+    @Getter
+    @RequiredArgsConstructor
+    private static class Variant {
+        
+        private final String id;
+        private final String md5;
+        private final String queryId;
+        private final Map<String, String> literals;
+        private volatile long lastAccess = System.currentTimeMillis();
+        
+    }
+    
+    @Override
+    public void close() throws Exception {
+        if (store != null) {
+            store.close();
+        }
+    }
+    
 }
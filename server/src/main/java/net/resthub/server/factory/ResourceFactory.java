@@ -17,6 +17,8 @@ import net.resthub.server.table.ServerTable;
 
 import org.restlet.data.Form;
 
+import com.google.inject.assistedinject.Assisted;
+
 /**
  * ResourceMdFactory
  * @author valdo
@@ -25,6 +27,8 @@ public interface ResourceFactory {
 
     public ServerTable create(MdTable table);
     public QueryId create(String sql) throws QueryException;
+    public QueryId create(@Assisted("sql") String sql, @Assisted("id") String id) throws QueryException;
+    public QueryId create(@Assisted("sql") String sql, boolean parameterizeLiterals) throws QueryException;
     public Query create(QueryId qid) throws QueryException;
     
     public DataHandler createDataHandler(Query qmd, Form form);
@@ -4,17 +4,21 @@ import javax.inject.Inject;
 
 import lombok.Getter;
 import lombok.Setter;
+import net.resthub.model.MdColumn;
 import net.resthub.server.cache.CcData;
+import net.resthub.server.exception.ClientErrorException;
 import net.resthub.server.exporter.DataExporter;
 import net.resthub.server.query.Query;
 
 import org.restlet.data.Form;
+import org.restlet.data.Status;
 import org.restlet.resource.ResourceException;
 
 import com.google.inject.assistedinject.Assisted;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import org.restlet.data.Reference;
 
@@ -23,7 +27,14 @@ public class DataHandler extends PagedHandler<CcData, DataExporter> {
     @Getter
     @Setter
     private boolean printColumns;
-    
+
+    /**
+     * Indexes of query columns to return, null for all columns.
+     */
+    @Getter
+    @Setter
+    private List<Integer> projection = null;
+
     @Inject
     public DataHandler(@Assisted Query query, @Assisted Form form) throws ResourceException {
     	super(query, form);
@@ -33,7 +44,100 @@ public class DataHandler extends PagedHandler<CcData, DataExporter> {
     public DataExporter createExporter() {
         return rf.createDataExporter(this);
     }
-    
+
+    /**
+     * Set projection by column names.
+     * @param cols comma separated column names or cnames
+     * @throws ResourceException if column is not found
+     */
+    public void setColumns(String cols) throws ResourceException {
+        List<MdColumn> columns = getQuery().getColumns();
+        List<Integer> indexes = new ArrayList<>();
+        for (String name: cols.split(",")) {
+            name = name.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            Integer index = null;
+            for (int i = 0; i < columns.size() && index == null; i++) {
+                MdColumn c = columns.get(i);
+                if (name.equalsIgnoreCase(c.getName()) || name.equalsIgnoreCase(c.getCName())) {
+                    index = i;
+                }
+            }
+            if (index == null) {
+                throw new ClientErrorException(Status.CLIENT_ERROR_BAD_REQUEST, "Column %s not found", name);
+            }
+            if (!indexes.contains(index)) {
+                indexes.add(index);
+            }
+        }
+        this.projection = indexes.isEmpty() ? null : Collections.unmodifiableList(indexes);
+    }
+
+    /**
+     * Columns to return.
+     * @return projected columns or all query columns
+     */
+    public List<MdColumn> getColumns() {
+        if (projection == null) {
+            return getQuery().getColumns();
+        }
+        List<MdColumn> columns = new ArrayList<>();
+        for (Integer i: projection) {
+            columns.add(getQuery().getColumns().get(i));
+        }
+        return columns;
+    }
+
+    /**
+     * Query column index of the returned column.
+     * @param col returned column index
+     * @return
+     */
+    public int getColumnIndex(int col) {
+        return projection == null ? col : projection.get(col);
+    }
+
+    /**
+     * Projection is answered from the cached page of all columns if there is one.
+     * @return
+     */
+    @Override
+    protected CcData lookup() {
+        CcData value = super.lookup();
+        if (value == null && projection != null) {
+            DataHandler all = rf.createDataHandler(getQuery(), new Form(getQueryString()));
+            all.setPerPage(getPerPage());
+            all.setPage(getPage());
+
+            CcData allValue = all.lookup();
+            if (allValue != null) {
+                value = new CcData();
+                if (allValue.getValue() != null) {
+                    List<Object[]> rows = new ArrayList<>(allValue.getValue().size());
+                    for (Object[] row: allValue.getValue()) {
+                        Object[] prow = new Object[projection.size()];
+                        for (int i = 0; i < prow.length; i++) {
+                            prow[i] = row[projection.get(i)];
+                        }
+                        rows.add(prow);
+                    }
+                    value.setValue(rows);
+                }
+            }
+        }
+        return value;
+    }
+
+    @Override
+    protected List getSequenceParts() {
+        if (projection == null) {
+            return Collections.emptyList();
+        }
+        return Collections.singletonList(projection.toString());
+    }
+
     public URL getReference(Reference ref, Object... parts) {
         List<Object> myparts = new ArrayList<>();
         if (getPerPage() != null && getPage() != null) {
@@ -45,4 +149,4 @@ public class DataHandler extends PagedHandler<CcData, DataExporter> {
         return getQuery().getReference(ref, getQueryString(), myparts.toArray());
     }
 
-}
\ No newline at end of file
+}
@@ -3,10 +3,12 @@ package net.resthub.server.handler;
 import java.math.BigDecimal;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 import javax.inject.Inject;
 
@@ -16,15 +18,15 @@ import lombok.extern.log4j.Log4j;
 import net.resthub.server.app.BaseResource;
 import net.resthub.server.cache.CacheStats;
 import net.resthub.server.cache.CcBase;
+import net.resthub.server.cache.RefreshScheduler;
 import net.resthub.server.exception.ClientErrorException;
 import net.resthub.server.exporter.Exporter;
 import net.resthub.server.factory.CacheFactory;
 import net.resthub.server.factory.ResourceFactory;
 import net.resthub.server.query.Query;
 import net.resthub.server.query.QueryParameter;
-import net.sf.ehcache.Cache;
 import net.sf.ehcache.Element;
-import org.apache.commons.lang.builder.HashCodeBuilder;
+import org.apache.commons.codec.digest.DigestUtils;
 
 import org.hibernate.SQLQuery;
 import org.hibernate.type.BasicType;
@@ -54,6 +56,9 @@ public abstract class Handler<C extends CcBase<?>, E extends Exporter<C>> {
     @Inject
     protected ResourceFactory rf;
     
+    @Inject
+    private RefreshScheduler refresher;
+    
     @Getter
     private final Query query;
     
@@ -123,6 +128,7 @@ public abstract class Handler<C extends CcBase<?>, E extends Exporter<C>> {
     }
 
     public void applyParameters(SQLQuery query) throws SQLException {
+        StringBuilder lengths = new StringBuilder();
         for (Map.Entry<QueryParameter, Object> e : parameters.entrySet()) {
             
             QueryParameter p = e.getKey();
@@ -131,15 +137,18 @@ public abstract class Handler<C extends CcBase<?>, E extends Exporter<C>> {
             
             if (value != null && p.getArray()) {
                 
+                Object[] values = p.getBindValues((Object[]) value, this.query.getCfg().getArrayBinding());
+                lengths.append(name).append('=').append(values.length).append(';');
+                
                 switch (p.getType()) {
                     case DATE:
-                        query.setParameterList(name, (Object[]) value, new DateType());
+                        query.setParameterList(name, values, new DateType());
                         break;
                     case NUMBER:
-                        query.setParameterList(name, (Object[]) value, new BigDecimalType());
+                        query.setParameterList(name, values, new BigDecimalType());
                         break;
                     case STRING:
-                        query.setParameterList(name, (Object[]) value, new StringType());
+                        query.setParameterList(name, values, new StringType());
                         break;
                     case CLOB:
                     case BLOB:
@@ -164,64 +173,77 @@ public abstract class Handler<C extends CcBase<?>, E extends Exporter<C>> {
                 }
             }
         }
+        
+        // SQL text as expanded by array lengths
+        this.query.getStats().recordSqlText(query.getQueryString(), lengths.toString());
     }
 
     @SuppressWarnings("unchecked")
 	public C getCached() {
         if (query.isCacheable()) {
-            Cache cache = ccf.get(query);
-            if (cache == null) {
-
-                if (log.isDebugEnabled()) {
-                    log.debug(String.format("Cache for %s not found", this));
-                }
-
-            } else {
-
-                if (log.isDebugEnabled()) {
-                    log.debug(String.format("Cache for %s found", this));
-                }
 
-                if (cache.isKeyInCache(getId())) {
+            C value = lookup();
+            if (value == null) {
+                value = (C) ccf.restore(this);
+            }
+            
+            ccf.recordAccess(query, getId(), value != null);
+            refresher.recordAccess(this);
+            return value;
 
-                    Element el = cache.get(getId());
-                    boolean expired = (el == null || el.isExpired());
+        }
 
-                    if (log.isDebugEnabled()) {
+        return (C) null;
 
-                        log.debug(String.format("Element %d found in %s cache (expired = %s)",
-                                getId(), query.getQid(), expired));
-                    }
+    }
 
-                    if (el != null && !expired) {
-                        return (C) el.getObjectValue();
-                    }
+    /**
+     * Cached value lookup: neither restores the value nor records access.
+     * @return value or null if not found or expired
+     */
+    @SuppressWarnings("unchecked")
+    protected C lookup() {
+        Element el = ccf.getElement(query, getId());
+        if (el == null) {
 
-                } else {
+            if (log.isDebugEnabled()) {
+                log.debug(String.format("Element %s not found in %s cache", getId(), query.getQid()));
+            }
+            
+            return null;
 
-                    if (log.isDebugEnabled()) {
-                        log.debug(String.format("Element %d not found in %s cache", getId(), query.getQid()));
-                    }
+        }
 
-                }
-            }
+        boolean expired = el.isExpired();
 
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("Element %s found in %s cache (expired = %s)",
+                    getId(), query.getQid(), expired));
         }
 
-        return (C) null;
+        return expired ? null : (C) ccf.getValue(el);
+    }
 
+    /**
+     * Record access of the element served without cache lookup, i.e. 
+     * coalesced with the request in flight.
+     */
+    public void recordAccess() {
+        if (query.isCacheable()) {
+            ccf.recordFrequency(query, getId());
+            refresher.recordAccess(this);
+        }
     }
 
     public void setCached(C data) {
         if (query.isCacheable()) {
-            Cache cache = ccf.get(query);
-            if (cache != null) {
-
-                cache.put(new Element(getId(), data));
+            if (ccf.put(query, getId(), data)) {
                 
+                ccf.persist(this, data);
+
                 if (query.getHitCount() > 0 && !query.isEternal()) {
                     CacheStats cs = getCacheStats();
-                    ccf.createCacheJob(this, cs.getExpTime());
+                    refresher.schedule(this, cs.getExpTime());
                 }
                 
                 if (log.isDebugEnabled()) {
@@ -236,45 +258,74 @@ public abstract class Handler<C extends CcBase<?>, E extends Exporter<C>> {
         CacheStats cs = new CacheStats();
 
         if (query.isCacheable()) {
-            Cache cache = ccf.get(query);
-            if (cache != null) {
-                if (cache.isKeyInCache(getId())) {
-                    Element el = cache.get(getId());
-                    cs.setExpired(el == null || el.isExpired());
-
-                    if (el != null && !cs.isExpired()) {
-                        cs.setLastUpdate(el.getLastUpdateTime());
-                        cs.setExpTime(el.getExpirationTime());
-                        cs.setHitCount(el.getHitCount());
-                    }
+            Element el = ccf.getElement(query, getId());
+            if (el != null) {
+                cs.setExpired(el.isExpired());
+
+                if (!cs.isExpired()) {
+                    cs.setLastUpdate(el.getLastUpdateTime());
+                    cs.setExpTime(el.getExpirationTime());
+                    cs.setHitCount(el.getHitCount());
                 }
             }
         }
         return cs;
     }
 
-    private Integer id = null;
+    private HandlerId id = null;
     
-    public final Integer getId() {
+    public final HandlerId getId() {
         if (id == null) {
-            HashCodeBuilder hcb = new HashCodeBuilder(17, 37)
-                .append(this.getClass())
-                .append(getQuery().getQid().getId());
+            HandlerId.Encoder enc = new HandlerId.Encoder()
+                .add(this.getClass())
+                .add(getQuery().getQid().getId());
 
             for (Object part: getIdParts()) {
-                hcb.append(part);
+                enc.add(part);
             }
             
-            for (Map.Entry<QueryParameter, Object> e : getParameters().entrySet()) {
-                hcb.append(e.getKey().getName());
-                hcb.append(e.getValue());
+            for (Map.Entry<String, Object> e : getSortedParameters().entrySet()) {
+                enc.add(e.getKey());
+                enc.add(e.getValue());
             }
             
-            this.id = hcb.toHashCode();
+            this.id = enc.toId();
         }
         return id;
     }
     
+    /**
+     * Key that identifies the same result across restarts: unlike id 
+     * it does not depend on the query id (query md5 is used with it).
+     * @return 
+     */
+    public final String getStableKey() {
+        StringBuilder sb = new StringBuilder(getClass().getSimpleName());
+        for (Object part: getIdParts()) {
+            sb.append('|').append(part);
+        }
+        
+        for (Map.Entry<String, Object> e : getSortedParameters().entrySet()) {
+            Object v = e.getValue();
+            if (v instanceof Object[]) {
+                v = Arrays.deepToString((Object[]) v);
+            } else if (v instanceof Date) {
+                v = ((Date) v).getTime();
+            }
+            sb.append('|').append(e.getKey()).append('=').append(v);
+        }
+        
+        return DigestUtils.md5Hex(sb.toString());
+    }
+    
+    protected Map<String, Object> getSortedParameters() {
+        Map<String, Object> sorted = new TreeMap<>();
+        for (Map.Entry<QueryParameter, Object> e : getParameters().entrySet()) {
+            sorted.put(e.getKey().getName(), e.getValue());
+        }
+        return sorted;
+    }
+    
     protected abstract List getIdParts();
     public abstract E createExporter();
     
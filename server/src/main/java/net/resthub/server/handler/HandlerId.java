@@ -0,0 +1,110 @@
+package net.resthub.server.handler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+/**
+ * HandlerId: cache element key of a handler, 128 bits of the SHA-256 digest
+ * of the canonical handler encoding (handler class, query id, id parts and
+ * parameters). Values are encoded with their types and lengths so that
+ * different values can not produce the same encoding.
+ * @author valdo
+ */
+public final class HandlerId implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long high;
+    private final long low;
+
+    public HandlerId(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    public static HandlerId digest(byte[] bytes) {
+        ByteBuffer bb = ByteBuffer.wrap(DigestUtils.sha256(bytes));
+        return new HandlerId(bb.getLong(), bb.getLong());
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (low ^ (low >>> 32));
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof HandlerId)) {
+            return false;
+        }
+        HandlerId other = (HandlerId) obj;
+        return low == other.low && high == other.high;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%016x%016x", high, low);
+    }
+
+    /**
+     * Canonical encoding of the id values.
+     */
+    public static class Encoder {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        private final DataOutputStream out = new DataOutputStream(bytes);
+
+        public Encoder add(Object value) {
+            try {
+                if (value == null) {
+                    out.writeByte('0');
+                } else if (value instanceof Object[]) {
+                    Object[] arr = (Object[]) value;
+                    out.writeByte('A');
+                    out.writeInt(arr.length);
+                    for (Object v: arr) {
+                        add(v);
+                    }
+                } else if (value instanceof Date) {
+                    out.writeByte('D');
+                    out.writeLong(((Date) value).getTime());
+                } else if (value instanceof Class) {
+                    write('C', ((Class<?>) value).getName());
+                } else if (value instanceof String) {
+                    write('S', (String) value);
+                } else if (value instanceof Number) {
+                    write('N', value.toString());
+                } else {
+                    write('O', value.toString());
+                }
+            } catch (IOException ex) {
+                // Not thrown by the byte array stream
+                throw new IllegalStateException(ex);
+            }
+            return this;
+        }
+
+        private void write(char type, String value) throws IOException {
+            byte[] b = value.getBytes(StandardCharsets.UTF_8);
+            out.writeByte(type);
+            out.writeInt(b.length);
+            out.write(b);
+        }
+
+        public HandlerId toId() {
+            return digest(bytes.toByteArray());
+        }
+
+    }
+
+}
@@ -10,6 +10,7 @@ import org.restlet.data.Form;
 import org.restlet.resource.ResourceException;
 
 import com.google.inject.assistedinject.Assisted;
+import java.util.ArrayList;
 import java.util.List;
 import lombok.Getter;
 import lombok.Setter;
@@ -48,6 +49,43 @@ public class LobHandler extends PagedHandler<CcLob, LobExporter> {
         return getQuery().getColumns().get(column);
     }
     
+    /**
+     * LOB columns to fetch: the selected column or all LOB columns of the query.
+     * @return column indexes
+     */
+    public List<Integer> getLobColumns() {
+        List<Integer> cols = new ArrayList<>();
+        if (column != null) {
+            cols.add(column);
+        } else {
+            List<MdColumn> mdColumns = getQuery().getColumns();
+            for (int i = 0; i < mdColumns.size(); i++) {
+                switch (mdColumns.get(i).getType()) {
+                    case BLOB:
+                    case CLOB:
+                        cols.add(i);
+                        break;
+                }
+            }
+        }
+        return cols;
+    }
+    
+    /**
+     * Create single cell handler on the same page and parameters.
+     * @param row row on the page
+     * @param column column number
+     * @return cell handler
+     */
+    public LobHandler createCellHandler(int row, int column) {
+        LobHandler cell = rf.createLobHandler(getQuery(), new Form(getQueryString()));
+        cell.setPerPage(getPerPage());
+        cell.setPage(getPage());
+        cell.setRow(row);
+        cell.setColumn(column);
+        return cell;
+    }
+    
     public MediaType getMediaType() {
         if (mediaType == null) {
             switch (getMdColumn().getType()) {
@@ -64,6 +102,17 @@ public class LobHandler extends PagedHandler<CcLob, LobExporter> {
         return mediaType;
     }
     
+    /**
+     * Streamed LOBs are not held in memory thus not cached.
+     * @param data 
+     */
+    @Override
+    public void setCached(CcLob data) {
+        if (!data.isStreamed()) {
+            super.setCached(data);
+        }
+    }
+    
     @Override
     protected List getIdParts() {
         List parts = super.getIdParts();
@@ -1,7 +1,9 @@
 package net.resthub.server.handler;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import lombok.Getter;
 import lombok.Setter;
 import net.resthub.server.query.Query;
@@ -31,7 +33,38 @@ public abstract class PagedHandler<C extends CcBase<?>, E extends Exporter<C>> e
         List parts = new ArrayList();
         parts.add(perPage);
         parts.add(page);
+        parts.addAll(getSequenceParts());
         return parts;
     }
     
+    /**
+     * Id parts shared by all pages of the sequence, other than page size.
+     * @return 
+     */
+    protected List getSequenceParts() {
+        return Collections.emptyList();
+    }
+    
+    /**
+     * Id of the page sequence, i.e. handler id less the page number.
+     * @return 
+     */
+    public HandlerId getSequenceId() {
+        HandlerId.Encoder enc = new HandlerId.Encoder()
+            .add(this.getClass())
+            .add(getQuery().getQid().getId())
+            .add(perPage);
+        
+        for (Object part: getSequenceParts()) {
+            enc.add(part);
+        }
+        
+        for (Map.Entry<String, Object> e : getSortedParameters().entrySet()) {
+            enc.add(e.getKey());
+            enc.add(e.getValue());
+        }
+        
+        return enc.toId();
+    }
+    
 }
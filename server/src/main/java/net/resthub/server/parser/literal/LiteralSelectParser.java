@@ -0,0 +1,202 @@
+package net.resthub.server.parser.literal;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import lombok.Getter;
+import net.resthub.model.MdType;
+import net.resthub.parser.AbstractAllParser;
+import net.sf.jsqlparser.expression.BinaryExpression;
+import net.sf.jsqlparser.expression.DoubleValue;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.JdbcNamedParameter;
+import net.sf.jsqlparser.expression.LongValue;
+import net.sf.jsqlparser.expression.SignedExpression;
+import net.sf.jsqlparser.expression.StringValue;
+import net.sf.jsqlparser.expression.operators.relational.Between;
+import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
+import net.sf.jsqlparser.expression.operators.relational.ExpressionList;
+import net.sf.jsqlparser.expression.operators.relational.GreaterThan;
+import net.sf.jsqlparser.expression.operators.relational.GreaterThanEquals;
+import net.sf.jsqlparser.expression.operators.relational.InExpression;
+import net.sf.jsqlparser.expression.operators.relational.LikeExpression;
+import net.sf.jsqlparser.expression.operators.relational.MinorThan;
+import net.sf.jsqlparser.expression.operators.relational.MinorThanEquals;
+import net.sf.jsqlparser.expression.operators.relational.NotEqualsTo;
+import net.sf.jsqlparser.statement.select.Join;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+
+/**
+ * LiteralSelectParser: lifts number and string literals compared in WHERE
+ * clauses (the ones parameters are collected from) into internal named
+ * parameters. Literals of the select list, GROUP BY and ORDER BY are left
+ * as is since they define column names and positions. Parameter type is
+ * encoded in its name so that it survives the SQL text.
+ * @author valdo
+ */
+public class LiteralSelectParser extends AbstractAllParser {
+
+    public static final String PREFIX = "lit__";
+    private static final char NUMBER = 'n';
+    private static final char STRING = 's';
+
+    /**
+     * Lifted literal values by parameter name, in order of appearance.
+     */
+    @Getter
+    private final Map<String, String> literals = new LinkedHashMap<>();
+
+    public static boolean isLiteral(String name) {
+        return name.toLowerCase(Locale.ENGLISH).startsWith(PREFIX);
+    }
+
+    /**
+     * Type of the parameter.
+     * @param name parameter name
+     * @return NUMBER for the lifted number literal, STRING otherwise
+     */
+    public static MdType getType(String name) {
+        if (isLiteral(name) && name.length() > PREFIX.length()
+                && Character.toLowerCase(name.charAt(PREFIX.length())) == NUMBER) {
+            return MdType.NUMBER;
+        }
+        return MdType.STRING;
+    }
+
+    // SelectVisitor
+
+    @Override
+    public void visit(PlainSelect ps) {
+
+        ps.getFromItem().accept(this);
+
+        if (ps.getJoins() != null) {
+            for (Join j : ps.getJoins()) {
+                j.getRightItem().accept(this);
+            }
+        }
+
+        if (ps.getWhere() != null) {
+            ps.getWhere().accept(this);
+        }
+
+    }
+
+    // ExpressionVisitor
+
+    @Override
+    public void visit(EqualsTo et) {
+        visitComparison(et);
+    }
+
+    @Override
+    public void visit(NotEqualsTo net) {
+        visitComparison(net);
+    }
+
+    @Override
+    public void visit(GreaterThan gt) {
+        visitComparison(gt);
+    }
+
+    @Override
+    public void visit(GreaterThanEquals gte) {
+        visitComparison(gte);
+    }
+
+    @Override
+    public void visit(MinorThan mt) {
+        visitComparison(mt);
+    }
+
+    @Override
+    public void visit(MinorThanEquals mte) {
+        visitComparison(mte);
+    }
+
+    @Override
+    public void visit(LikeExpression le) {
+        visitComparison(le);
+    }
+
+    @Override
+    public void visit(Between btwn) {
+        btwn.getLeftExpression().accept(this);
+        if (!isLiteral(btwn.getLeftExpression())) {
+            btwn.setBetweenExpressionStart(lift(btwn.getBetweenExpressionStart()));
+            btwn.setBetweenExpressionEnd(lift(btwn.getBetweenExpressionEnd()));
+        }
+    }
+
+    @Override
+    public void visit(InExpression ie) {
+        if (ie.getLeftExpression() != null) {
+            ie.getLeftExpression().accept(this);
+        }
+        if (ie.getLeftItemsList() != null) {
+            ie.getLeftItemsList().accept(this);
+        }
+        if (ie.getLeftExpression() != null && !isLiteral(ie.getLeftExpression())
+                && ie.getRightItemsList() instanceof ExpressionList) {
+            List<Expression> items = ((ExpressionList) ie.getRightItemsList()).getExpressions();
+            for (int i = 0; i < items.size(); i++) {
+                items.set(i, lift(items.get(i)));
+            }
+        } else {
+            ie.getRightItemsList().accept(this);
+        }
+    }
+
+    // Utility
+
+    /**
+     * Comparison of two literals (i.e. 1 = 1) is left to the optimizer.
+     * @param be
+     */
+    private void visitComparison(BinaryExpression be) {
+        Expression left = be.getLeftExpression();
+        Expression right = be.getRightExpression();
+        if (isLiteral(left) && isLiteral(right)) {
+            return;
+        }
+        be.setLeftExpression(lift(left));
+        be.setRightExpression(lift(right));
+    }
+
+    private Expression lift(Expression e) {
+        String value;
+        char type;
+        if (e instanceof LongValue || e instanceof DoubleValue) {
+            value = e.toString();
+            type = NUMBER;
+        } else if (e instanceof SignedExpression && isNumber(((SignedExpression) e).getExpression())) {
+            SignedExpression se = (SignedExpression) e;
+            value = se.getSign() == '-' ? "-" + se.getExpression() : se.getExpression().toString();
+            type = NUMBER;
+        } else if (e instanceof StringValue) {
+            value = ((StringValue) e).getNotExcapedValue();
+            type = STRING;
+        } else {
+            e.accept(this);
+            return e;
+        }
+
+        String name = PREFIX + type + (literals.size() + 1);
+        literals.put(name, value);
+
+        JdbcNamedParameter p = new JdbcNamedParameter();
+        p.setName(name);
+        return p;
+    }
+
+    private static boolean isNumber(Expression e) {
+        return e instanceof LongValue || e instanceof DoubleValue;
+    }
+
+    private static boolean isLiteral(Expression e) {
+        return isNumber(e) || e instanceof StringValue
+                || (e instanceof SignedExpression && isNumber(((SignedExpression) e).getExpression()));
+    }
+
+}
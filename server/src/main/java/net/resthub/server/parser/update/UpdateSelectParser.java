@@ -14,6 +14,7 @@ import net.sf.jsqlparser.statement.select.SubSelect;
 import net.resthub.exception.QueryException;
 import net.resthub.server.table.ServerTable;
 import net.resthub.server.parser.check.CheckSelectParser;
+import net.resthub.server.parser.literal.LiteralSelectParser;
 import net.resthub.parser.AbstractAllParser;
 import net.resthub.server.query.QueryParameter;
 
@@ -81,12 +82,12 @@ public class UpdateSelectParser extends AbstractAllParser {
     }
 
     /**
-     * RESTful query parameters
+     * RESTful query parameters and lifted literals
      * @param p 
      */
     @Override
     public void visit(JdbcNamedParameter p) {
-        parameters.put(p.getName(), new QueryParameter(p.getName()));
+        parameters.put(p.getName(), new QueryParameter(p.getName(), LiteralSelectParser.getType(p.getName())));
     }
     
 }
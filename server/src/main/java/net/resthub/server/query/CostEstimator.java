@@ -0,0 +1,79 @@
+package net.resthub.server.query;
+
+import java.util.Collection;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import lombok.extern.log4j.Log4j;
+import net.resthub.exception.QueryException;
+import net.resthub.server.ServerAppConfig;
+import net.resthub.server.table.TableId;
+
+/**
+ * CostEstimator: explains query at registration and checks the estimated
+ * cost against the lowest cost ceiling of the query tables. Expensive
+ * query is either rejected or marked to be throttled. Queries of tables
+ * without ceilings are not explained.
+ * @author valdo
+ */
+@Log4j
+@Singleton
+public class CostEstimator {
+
+    private final PlanReader reader;
+    private final ServerAppConfig cfg;
+
+    @Inject
+    public CostEstimator(PlanReader reader, ServerAppConfig cfg) {
+        this.reader = reader;
+        this.cfg = cfg;
+    }
+
+    /**
+     * Estimate query cost. Query is explained only if one of its tables
+     * has a cost ceiling, as the plan is not needed otherwise.
+     * @param connectionName
+     * @param sql
+     * @param tables query tables
+     * @return plan or null if no ceiling applies or query can not be explained
+     * @throws QueryException if query is too expensive and should be rejected
+     */
+    public QueryPlan estimate(String connectionName, String sql, Collection<TableId> tables) throws QueryException {
+        long ceiling = Long.MAX_VALUE;
+        TableId limiting = null;
+        for (TableId tid: tables) {
+            Long c = cfg.getCostCeiling(tid);
+            if (c != null && c < ceiling) {
+                ceiling = c;
+                limiting = tid;
+            }
+        }
+
+        if (limiting == null) {
+            return null;
+        }
+
+        QueryPlan plan;
+        try {
+            plan = reader.explain(connectionName, sql);
+        } catch (Exception ex) {
+            log.warn(String.format("Query can not be explained: %s", ex.getMessage()));
+            return null;
+        }
+
+        if (plan == null) {
+            return null;
+        }
+
+        if (plan.expensive(ceiling).isExpensive()) {
+            if (cfg.isRejectExpensiveQueries()) {
+                throw new QueryException("Query cost %d exceeds the ceiling %d of %s", plan.getCost(), ceiling, limiting);
+            }
+            log.warn(String.format("Query cost %d exceeds the ceiling %d of %s, query will be throttled", plan.getCost(), ceiling, limiting));
+        }
+
+        return plan;
+    }
+
+}
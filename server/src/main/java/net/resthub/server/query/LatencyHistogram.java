@@ -0,0 +1,163 @@
+package net.resthub.server.query;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * LatencyHistogram: lock-free latency histogram with fixed 1-2-5 bucket
+ * bounds from 50 microseconds to 100 seconds. Percentiles are
+ * interpolated within the bucket.
+ * @author valdo
+ */
+public class LatencyHistogram {
+
+    private static final long[] BOUNDS;
+    static {
+        long[] steps = { 1, 2, 5 };
+        long[] bounds = new long[20];
+        int i = 0;
+        bounds[i++] = TimeUnit.MICROSECONDS.toNanos(50);
+        for (long decade = TimeUnit.MICROSECONDS.toNanos(100); i < bounds.length; decade *= 10) {
+            for (long s: steps) {
+                if (i < bounds.length) {
+                    bounds[i++] = decade * s;
+                }
+            }
+        }
+        BOUNDS = bounds;
+    }
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BOUNDS.length + 1);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+
+    /**
+     * Upper bucket bounds in nanoseconds, the last (overflow) bucket is unbounded.
+     * @return bounds
+     */
+    public static long[] getBounds() {
+        return BOUNDS.clone();
+    }
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        buckets.incrementAndGet(bucket(nanos));
+        sum.addAndGet(nanos);
+        count.incrementAndGet();
+    }
+
+    public void recordMillis(long millis) {
+        record(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    /**
+     * Add counts of the other histogram (aggregation).
+     * @param other
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < buckets.length(); i++) {
+            long c = other.buckets.get(i);
+            if (c > 0) {
+                buckets.addAndGet(i, c);
+            }
+        }
+        sum.addAndGet(other.sum.get());
+        count.addAndGet(other.count.get());
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Sum of recorded values.
+     * @return nanoseconds
+     */
+    public long getSum() {
+        return sum.get();
+    }
+
+    public long getBucket(int i) {
+        return buckets.get(i);
+    }
+
+    public int getBucketCount() {
+        return buckets.length();
+    }
+
+    /**
+     * Mean.
+     * @return nanoseconds
+     */
+    public long getMean() {
+        long c = count.get();
+        return c == 0 ? 0 : sum.get() / c;
+    }
+
+    /**
+     * Percentile.
+     * @param q quantile, 0 to 1
+     * @return nanoseconds
+     */
+    public long getPercentile(double q) {
+        long[] counts = new long[buckets.length()];
+        long total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        double rank = q * total;
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0 && seen + counts[i] >= rank) {
+                long lower = i == 0 ? 0 : BOUNDS[i - 1];
+                if (i == BOUNDS.length) {
+                    return lower;
+                }
+                double fraction = (rank - seen) / counts[i];
+                return lower + (long) ((BOUNDS[i] - lower) * fraction);
+            }
+            seen += counts[i];
+        }
+        return BOUNDS[BOUNDS.length - 1];
+    }
+
+    public JSONObject getJSON() throws JSONException {
+        JSONObject ret = new JSONObject();
+        ret.put("count", getCount());
+        ret.put("mean", toMillis(getMean()));
+        ret.put("p50", toMillis(getPercentile(0.5)));
+        ret.put("p95", toMillis(getPercentile(0.95)));
+        ret.put("p99", toMillis(getPercentile(0.99)));
+        return ret;
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1000000.0;
+    }
+
+    private static int bucket(long nanos) {
+        int lo = 0;
+        int hi = BOUNDS.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (BOUNDS[mid] < nanos) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+}
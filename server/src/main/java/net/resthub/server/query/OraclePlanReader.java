@@ -0,0 +1,78 @@
+package net.resthub.server.query;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import net.resthub.factory.ConnectionManager;
+
+import org.hibernate.Session;
+import org.hibernate.jdbc.Work;
+
+/**
+ * OraclePlanReader: reads root row of EXPLAIN PLAN from the PLAN_TABLE.
+ * Statement is not prepared so that bind variables are left unbound.
+ * @author valdo
+ */
+@Singleton
+public class OraclePlanReader implements PlanReader {
+
+    private static final String EXPLAIN_SQL = "explain plan set statement_id = '%s' for %s";
+    private static final String PLAN_SQL = "select cost, cardinality from plan_table where statement_id = '%s' and id = 0";
+    private static final String CLEAN_SQL = "delete from plan_table where statement_id = '%s'";
+
+    @Inject
+    private ConnectionManager cm;
+
+    @Override
+    public QueryPlan explain(String connectionName, final String sql) throws Exception {
+        final QueryPlan[] plan = new QueryPlan[1];
+        final String statementId = UUID.randomUUID().toString().substring(0, 30);
+
+        Session session = cm.getSession(connectionName);
+        try {
+            session.doWork(new Work() {
+
+                @Override
+                public void execute(Connection connection) throws SQLException {
+                    try (Statement st = connection.createStatement()) {
+                        try {
+                            st.execute(String.format(EXPLAIN_SQL, statementId, sql));
+                            try (ResultSet rs = st.executeQuery(String.format(PLAN_SQL, statementId))) {
+                                if (rs.next()) {
+                                    plan[0] = new QueryPlan(rs.getLong(1), rs.getLong(2));
+                                }
+                            }
+                        } finally {
+                            
+                            // Do not leave plan rows in the pooled session
+                            try {
+                                st.execute(String.format(CLEAN_SQL, statementId));
+                                if (!connection.getAutoCommit()) {
+                                    connection.commit();
+                                }
+                            } catch (SQLException ex) {
+                                if (!connection.getAutoCommit()) {
+                                    connection.rollback();
+                                }
+                                throw ex;
+                            }
+                            
+                        }
+                    }
+                }
+
+            });
+        } finally {
+            session.close();
+        }
+
+        return plan[0];
+    }
+
+}
@@ -0,0 +1,21 @@
+package net.resthub.server.query;
+
+import com.google.inject.ImplementedBy;
+
+/**
+ * PlanReader: reads the optimizer estimates of the query.
+ * @author valdo
+ */
+@ImplementedBy(OraclePlanReader.class)
+public interface PlanReader {
+
+    /**
+     * Explain query.
+     * @param connectionName connection to explain the query on
+     * @param sql query SQL
+     * @return plan estimates or null if not available
+     * @throws Exception
+     */
+    QueryPlan explain(String connectionName, String sql) throws Exception;
+
+}
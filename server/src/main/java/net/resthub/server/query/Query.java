@@ -12,6 +12,7 @@ import java.util.Set;
 import javax.inject.Inject;
 
 import lombok.Getter;
+import lombok.Setter;
 import lombok.ToString;
 import net.resthub.exception.QueryException;
 import net.resthub.factory.TableBuilder;
@@ -48,6 +49,12 @@ public class Query {
     
     private final QueryId qid;
     private final String sql;
+    
+    /**
+     * SQL for data pages: LOB columns are projected as their lengths
+     * instead of locators.
+     */
+    private final String dataSql;
     private final Date createTime = new Date();
     
     private String connectionName;
@@ -59,6 +66,12 @@ public class Query {
     private final List<QueryParameter> parameters = new ArrayList<>();
     private final Set<TableId> tables = new HashSet<>();
     private final QueryStats stats = new QueryStats();
+    
+    /**
+     * Optimizer estimates taken at registration, null if not available.
+     */
+    @Setter
+    private QueryPlan plan;
 
     @Inject
     public Query(@Assisted QueryId qid, ResourceFactory rf, TableBuilder tf) throws QueryException, Exception {
@@ -120,6 +133,12 @@ public class Query {
         // Collect columns
         tf.collectColumns(this.connectionName, tsql, columns);
         
+        this.sql = getSelectSql(tsql, false);
+        this.dataSql = getSelectSql(tsql, true);
+        
+    }
+    
+    private String getSelectSql(String tsql, boolean lobLengths) {
         StringBuilder cols = new StringBuilder();
         cols.append("select ");
         boolean firstPass = Boolean.TRUE;
@@ -127,13 +146,31 @@ public class Query {
             if (!firstPass) {
                 cols.append(",");
             }
-            cols.append("\"").append(c.getName()).append("\"");
+            switch (c.getType()) {
+                case BLOB:
+                case CLOB:
+                    if (lobLengths) {
+                        cols.append("DBMS_LOB.GETLENGTH(\"").append(c.getName()).append("\") ");
+                    }
+                    // fall through to column name (alias)
+                default:
+                    cols.append("\"").append(c.getName()).append("\"");
+            }
             firstPass = Boolean.FALSE;
         }
         cols.append(" from (").append(tsql).append(")");
-        
-        this.sql = cols.toString();
-        
+        return cols.toString();
+    }
+    
+    public boolean hasLobColumns() {
+        for (MdColumn c: columns) {
+            switch (c.getType()) {
+                case BLOB:
+                case CLOB:
+                    return true;
+            }
+        }
+        return false;
     }
     
     public boolean isEternal() {
@@ -170,6 +207,7 @@ public class Query {
         
         if (verbose) {
             ret.put("sql", sql);
+            ret.put("dataSql", dataSql);
             ret.put("cacheTime", cacheTime);
             ret.put("md5", qid.getMd5());
             ret.put("id", qid.getId());
@@ -181,6 +219,9 @@ public class Query {
                 ret.put("cache", getReference(ref, null, "cache"));
             }
             ret.put("stats", stats.getJSON());
+            if (plan != null) {
+                ret.put("plan", plan.getJSON());
+            }
         }
         
         ret.put("columns", getColumnsJSON());
@@ -194,6 +235,10 @@ public class Query {
     }
 
     public JSONArray getColumnsJSON() throws JSONException {
+        return getColumnsJSON(columns);
+    }
+
+    public static JSONArray getColumnsJSON(List<MdColumn> columns) throws JSONException {
         JSONArray cols = new JSONArray();
         for (MdColumn c: columns) {
             JSONObject col = new JSONObject();
@@ -3,7 +3,10 @@ package net.resthub.server.query;
 import net.resthub.exception.QueryException;
 import com.google.inject.assistedinject.Assisted;
 import java.io.StringReader;
-import javax.inject.Inject;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import com.google.inject.assistedinject.AssistedInject;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.ToString;
@@ -13,6 +16,7 @@ import net.sf.jsqlparser.statement.Statement;
 import net.sf.jsqlparser.statement.select.Select;
 import org.apache.commons.codec.digest.DigestUtils;
 import net.resthub.server.factory.QueryFactory;
+import net.resthub.server.parser.literal.LiteralSelectParser;
 import org.hibernate.engine.jdbc.internal.BasicFormatterImpl;
 import org.hibernate.engine.jdbc.internal.Formatter;
 
@@ -32,15 +36,75 @@ public class QueryId {
     private final String sql;
     private final Select select;
     
-    @Inject
+    /**
+     * Literals lifted into parameters, empty if none.
+     */
+    private final Map<String, String> literals;
+    
+    /**
+     * Md5 of the SQL before literals were lifted.
+     */
+    private final String literalMd5;
+    
+    /**
+     * SQL before literals were lifted.
+     */
+    private final String literalSql;
+    
+    @AssistedInject
     public QueryId(@Assisted String sql, CCJSqlParserManager pm) throws QueryException {
+        this(sql, null, false, pm);
+    }
+    
+    /**
+     * Constructor for the query with literals optionally lifted into parameters.
+     * @param sql
+     * @param parameterizeLiterals
+     * @param pm
+     * @throws QueryException 
+     */
+    @AssistedInject
+    public QueryId(@Assisted("sql") String sql, @Assisted boolean parameterizeLiterals, CCJSqlParserManager pm) throws QueryException {
+        this(sql, null, parameterizeLiterals, pm);
+    }
+    
+    /**
+     * Constructor for the query restored with the existing id.
+     * @param sql
+     * @param id existing id or null to assign new one
+     * @param pm
+     * @throws QueryException 
+     */
+    @AssistedInject
+    public QueryId(@Assisted("sql") String sql, @Assisted("id") String id, CCJSqlParserManager pm) throws QueryException {
+        this(sql, id, false, pm);
+    }
+    
+    /**
+     * Literals are not lifted if the SQL already uses the internal parameter names.
+     * @param sql
+     * @param id existing id or null to assign new one
+     * @param parameterizeLiterals lift literals into parameters
+     * @param pm
+     * @throws QueryException 
+     */
+    public QueryId(String sql, String id, boolean parameterizeLiterals, CCJSqlParserManager pm) throws QueryException {
         try {
             Statement stmt = pm.parse(new StringReader(sql));
             if (stmt instanceof Select) {
                 this.select = (Select) stmt;
-                this.sql = SQL_FORMATTER.format(this.select.toString());
+                this.literalSql = SQL_FORMATTER.format(this.select.toString());
+                this.literalMd5 = DigestUtils.md5Hex(this.literalSql);
+                if (parameterizeLiterals && !sql.toLowerCase(Locale.ENGLISH).contains(":" + LiteralSelectParser.PREFIX)) {
+                    LiteralSelectParser literalParser = new LiteralSelectParser();
+                    this.select.getSelectBody().accept(literalParser);
+                    this.literals = Collections.unmodifiableMap(literalParser.getLiterals());
+                } else {
+                    this.literals = Collections.emptyMap();
+                }
+                this.sql = this.literals.isEmpty() ? this.literalSql : SQL_FORMATTER.format(this.select.toString());
                 this.md5 = DigestUtils.md5Hex(this.sql);
-                this.id = QueryFactory.nextUID();
+                this.id = id == null ? QueryFactory.nextUID() : id;
             } else {
                 throw new QueryException("Only SELECT statements allowed!");
             }
@@ -1,54 +1,228 @@
 package net.resthub.server.query;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import net.resthub.server.table.TableId;
 
 /**
- * QueryMap
+ * QueryMap: lookups are lock-free and only stamp the access time,
+ * modifications are serialized. Capacity is bounded: when exceeded,
+ * least recently used query out of a random sample is selected
+ * for eviction.
  * @author valdo
  */
 public class QueryMap {
-    
-    private final Map<String, Query> queries = new ConcurrentHashMap<>();
-    private final Map<String, String> ids = new ConcurrentHashMap<>();
-    private final Map<String, Date> lastAccess = new ConcurrentHashMap<>();
 
-    public synchronized void add(Query q) {
+    public static final int DEFAULT_CAPACITY = 10000;
+    private static final int EVICTION_SAMPLE = 8;
+
+    private final int capacity;
+    private final Map<String, Entry> queries = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, String> ids = new ConcurrentHashMap<>();
+    private final Map<TableId, Set<String>> tableQueries = new ConcurrentHashMap<>();
+
+    /**
+     * Dense list of entries for sampling, guarded by this.
+     */
+    private final List<Entry> entries = new ArrayList<>();
+
+    public QueryMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public QueryMap(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Add query.
+     * @param q
+     * @return ids of queries to be evicted due to capacity
+     */
+    public synchronized List<String> add(Query q) {
         QueryId qid = q.getQid();
-        queries.put(qid.getId(), q);
+        Entry e = new Entry(q);
+
+        Entry prev = queries.put(qid.getId(), e);
+        if (prev != null) {
+            removeEntry(prev);
+        }
+
+        e.position = entries.size();
+        entries.add(e);
         ids.put(qid.getMd5(), qid.getId());
-        lastAccess.put(qid.getId(), new Date());
+        for (TableId tid: q.getTables()) {
+            Set<String> qids = tableQueries.get(tid);
+            if (qids == null) {
+                qids = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+                tableQueries.put(tid, qids);
+            }
+            qids.add(qid.getId());
+        }
+
+        List<String> victims = new ArrayList<>();
+        int excess = entries.size() - capacity;
+        for (int i = 0; i < excess; i++) {
+            Entry victim = sampleVictim(e, victims);
+            if (victim != null) {
+                victims.add(victim.query.getQid().getId());
+            }
+        }
+
+        return victims;
     }
-    
+
     public synchronized boolean remove(String id) {
-        Query q = queries.remove(id);
-        if (q != null) {
-            ids.remove(q.getQid().getMd5());
-            lastAccess.remove(q.getQid().getId());
+        Entry e = queries.remove(id);
+        if (e != null) {
+            removeEntry(e);
             return true;
         } else {
             return false;
         }
     }
-    
-    public synchronized Query get(String id) {
-        lastAccess.put(id, new Date());
-        return queries.get(id);
+
+    public Query get(String id) {
+        Entry e = queries.get(id);
+        if (e == null) {
+            return null;
+        }
+        e.lastAccess = System.nanoTime();
+        return e.query;
     }
-    
-    public synchronized String getId(String md5) {
+
+    /**
+     * Get query without stamping the access time, i.e. for background
+     * tasks that should not keep the query from eviction.
+     * @param id
+     * @return query or null if not found
+     */
+    public Query peek(String id) {
+        Entry e = queries.get(id);
+        return e == null ? null : e.query;
+    }
+
+    public String getId(String md5) {
         return ids.get(md5);
     }
-    
-    public Date getLastAccess(String id) {
-        return lastAccess.get(id);
+
+    /**
+     * Last access time.
+     * @param id
+     * @return last access time in milliseconds or null if query not found
+     */
+    public Long getLastAccess(String id) {
+        Entry e = queries.get(id);
+        if (e == null) {
+            return null;
+        }
+        return System.currentTimeMillis() - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - e.lastAccess);
+    }
+
+    /**
+     * Queries using the table.
+     * @param id table id
+     * @return query ids
+     */
+    public Set<String> getQueries(TableId id) {
+        Set<String> qids = tableQueries.get(id);
+        if (qids == null) {
+            return Collections.emptySet();
+        }
+        return new HashSet<>(qids);
     }
-    
+
     public Collection<Query> getQueries() {
-        return Collections.unmodifiableCollection(queries.values());
+        List<Query> ret = new ArrayList<>(queries.size());
+        for (Entry e: queries.values()) {
+            ret.add(e.query);
+        }
+        return Collections.unmodifiableCollection(ret);
+    }
+
+    public int size() {
+        return queries.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Least recently used entry of a random sample. Small maps are
+     * scanned entirely, as well as when the sample hits no candidate.
+     * @param added just added entry, not a candidate
+     * @param exclude ids of already selected victims
+     * @return victim or null if there is no candidate
+     */
+    private Entry sampleVictim(Entry added, List<String> exclude) {
+        Entry victim = null;
+        if (entries.size() > EVICTION_SAMPLE) {
+            ThreadLocalRandom rnd = ThreadLocalRandom.current();
+            for (int i = 0; i < EVICTION_SAMPLE; i++) {
+                victim = older(entries.get(rnd.nextInt(entries.size())), victim, added, exclude);
+            }
+        }
+        if (victim == null) {
+            for (Entry e: entries) {
+                victim = older(e, victim, added, exclude);
+            }
+        }
+        return victim;
+    }
+
+    private static Entry older(Entry e, Entry victim, Entry added, List<String> exclude) {
+        if (e == added || exclude.contains(e.query.getQid().getId())) {
+            return victim;
+        }
+        if (victim == null || e.lastAccess - victim.lastAccess < 0) {
+            return e;
+        }
+        return victim;
     }
-    
+
+    private void removeEntry(Entry e) {
+        Query q = e.query;
+        String id = q.getQid().getId();
+
+        // Swap with the last to keep the list dense
+        Entry last = entries.remove(entries.size() - 1);
+        if (last != e) {
+            entries.set(e.position, last);
+            last.position = e.position;
+        }
+
+        ids.remove(q.getQid().getMd5(), id);
+        for (TableId tid: q.getTables()) {
+            Set<String> qids = tableQueries.get(tid);
+            if (qids != null) {
+                qids.remove(id);
+                if (qids.isEmpty()) {
+                    tableQueries.remove(tid);
+                }
+            }
+        }
+    }
+
+    private static class Entry {
+
+        private final Query query;
+        private volatile long lastAccess = System.nanoTime();
+        private int position;
+
+        public Entry(Query query) {
+            this.query = query;
+        }
+
+    }
+
 }
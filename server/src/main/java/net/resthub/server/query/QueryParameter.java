@@ -1,6 +1,8 @@
 package net.resthub.server.query;
 
+import java.util.Arrays;
 import lombok.Getter;
+import net.resthub.model.MdArrayBinding;
 import net.resthub.model.MdParameter;
 import net.resthub.model.MdType;
 import org.apache.commons.lang.builder.ToStringBuilder;
@@ -12,16 +14,30 @@ import org.apache.commons.lang.builder.ToStringBuilder;
 public class QueryParameter extends MdParameter {
     
 	private static final long serialVersionUID = 1L;
+    
+    /**
+     * Oracle limit of expressions in the IN list.
+     */
+    public static final int MAX_IN_LIST = 1000;
 
 	/**
      * Constructor for RESTful query parameter
      * @param name
      */
     public QueryParameter(String name) {
+        this(name, MdType.STRING);
+    }
+    
+    /**
+     * Constructor for RESTful query parameter of the known type
+     * @param name
+     * @param type
+     */
+    public QueryParameter(String name, MdType type) {
         this.setArray(Boolean.FALSE);
         this.setId(0L);
         this.setName(name);
-        this.setType(MdType.STRING);
+        this.setType(type);
         this.sqlName = name;
     }
     
@@ -32,6 +48,7 @@ public class QueryParameter extends MdParameter {
      */
     public QueryParameter(MdParameter p, String alias) {
         this.setArray(p.getArray());
+        this.setArrayBinding(p.getArrayBinding());
         this.setCreateTime(p.getCreateTime());
         this.setCreateUser(p.getCreateUser());
         this.setId(p.getId());
@@ -46,6 +63,40 @@ public class QueryParameter extends MdParameter {
     @Getter
     private final String sqlName;
     
+    /**
+     * Array values to bind.
+     * @param values
+     * @param defaultBinding binding if parameter does not set one
+     * @return values as is or padded
+     */
+    public Object[] getBindValues(Object[] values, MdArrayBinding defaultBinding) {
+        MdArrayBinding binding = getArrayBinding() != null ? getArrayBinding() : defaultBinding;
+        if (binding == MdArrayBinding.PAD) {
+            return pad(values);
+        }
+        return values;
+    }
+    
+    /**
+     * Pad values with the last one up to the next power of two or
+     * the IN list limit. Empty and over the limit arrays are left as is.
+     * @param values
+     * @return 
+     */
+    public static Object[] pad(Object[] values) {
+        int n = values.length;
+        if (n == 0 || n > MAX_IN_LIST) {
+            return values;
+        }
+        int size = Math.min(Integer.highestOneBit(n - 1) << 1, MAX_IN_LIST);
+        if (size <= n) {
+            return values;
+        }
+        Object[] padded = Arrays.copyOf(values, size);
+        Arrays.fill(padded, n, size, values[n - 1]);
+        return padded;
+    }
+    
     public String toString(Object value) {
         StringBuilder svalue = new StringBuilder();
         if (value == null) {
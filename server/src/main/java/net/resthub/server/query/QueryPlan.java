@@ -0,0 +1,40 @@
+package net.resthub.server.query;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * QueryPlan: optimizer estimates of the query.
+ * @author valdo
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class QueryPlan {
+
+    private final long cost;
+    private final long cardinality;
+
+    /**
+     * Cost exceeds the ceiling of the query tables (throttled).
+     */
+    private boolean expensive = false;
+
+    public QueryPlan expensive(long ceiling) {
+        this.expensive = cost > ceiling;
+        return this;
+    }
+
+    public JSONObject getJSON() throws JSONException {
+        JSONObject ret = new JSONObject();
+        ret.put("cost", cost);
+        ret.put("cardinality", cardinality);
+        ret.put("expensive", expensive);
+        return ret;
+    }
+
+}
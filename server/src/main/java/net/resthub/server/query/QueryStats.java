@@ -1,5 +1,13 @@
 package net.resthub.server.query;
 
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
 import org.json.JSONException;
 import org.json.JSONObject;
 
@@ -7,55 +15,112 @@ import org.json.JSONObject;
  * QueryStats
  * @author valdo
  */
+@Getter
 public class QueryStats {
 
-    private int count = 0;
-    private int cached = 0;
-    private int sqlSuccesses = 0;
-    private int sqlErrors = 0;
-    private int sqlTimeAverage = 0;
-    private long cacheTime = 0L;
-    
-    public void setCached() {
-        synchronized(this) {
-            count += 1;
-            cached += 1;
+    /**
+     * Statement execution till the first row.
+     */
+    private final LatencyHistogram sqlTime = new LatencyHistogram();
+
+    /**
+     * Fetching the rest of rows.
+     */
+    private final LatencyHistogram fetchTime = new LatencyHistogram();
+
+    /**
+     * Conversion of data to the requested media type.
+     */
+    private final LatencyHistogram conversionTime = new LatencyHistogram();
+
+    /**
+     * Request handling end-to-end.
+     */
+    private final LatencyHistogram totalTime = new LatencyHistogram();
+
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong cached = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong sqlSuccesses = new AtomicLong();
+    private final AtomicLong sqlErrors = new AtomicLong();
+
+    private volatile long cacheTime = 0L;
+
+    /**
+     * Distinct SQL texts sent to the database (as expanded by array
+     * parameters), not tracked beyond the limit.
+     */
+    public static final int MAX_SQL_TEXTS = 4096;
+
+    @Getter(AccessLevel.NONE)
+    private final Set<String> sqlTexts = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /**
+     * Record SQL text sent to the database.
+     * @param sql SQL with named parameters
+     * @param arrayLengths bound lengths of array parameters
+     */
+    public void recordSqlText(String sql, String arrayLengths) {
+        if (sqlTexts.size() < MAX_SQL_TEXTS) {
+            sqlTexts.add(sql.length() + ":" + sql.hashCode() + ":" + arrayLengths);
         }
     }
-    
-    public void setSqlSuccess(int sqlElapsed) {
-        synchronized(this) {
-            count += 1;
-            this.sqlSuccesses += 1;
-            sqlTimeAverage = (sqlTimeAverage * (count - 1) + sqlElapsed) / count;
-        }
+
+    public int getSqlTexts() {
+        return sqlTexts.size();
     }
-    
+
+    public void setCached() {
+        count.incrementAndGet();
+        cached.incrementAndGet();
+    }
+
+    /**
+     * Value was loaded by a concurrent request.
+     */
+    public void setCoalesced() {
+        count.incrementAndGet();
+        coalesced.incrementAndGet();
+    }
+
+    public void setSqlSuccess() {
+        count.incrementAndGet();
+        sqlSuccesses.incrementAndGet();
+    }
+
     public void setSqlError() {
-        synchronized(this) {
-            count += 1;
-            sqlErrors += 1;
-        }
+        count.incrementAndGet();
+        sqlErrors.incrementAndGet();
     }
-    
+
+    public void setTimeout() {
+        timeouts.incrementAndGet();
+    }
+
     public JSONObject getJSON() throws JSONException {
         JSONObject o = new JSONObject();
-        synchronized(this) {
-            o.put("count", count);
-            o.put("cached", cached);
-            o.put("sqlSuccesses", sqlSuccesses);
-            o.put("sqlErrors", sqlErrors);
-            o.put("sqlTimeAverage", sqlTimeAverage);
-        }
+        o.put("count", count.get());
+        o.put("cached", cached.get());
+        o.put("coalesced", coalesced.get());
+        o.put("timeouts", timeouts.get());
+        o.put("sqlSuccesses", sqlSuccesses.get());
+        o.put("sqlErrors", sqlErrors.get());
+        o.put("sqlTexts", getSqlTexts());
+        o.put("sqlTimeAverage", (sqlTime.getMean() + fetchTime.getMean()) / 1000000L);
+
+        JSONObject latency = new JSONObject();
+        latency.put("sql", sqlTime.getJSON());
+        latency.put("fetch", fetchTime.getJSON());
+        latency.put("conversion", conversionTime.getJSON());
+        latency.put("total", totalTime.getJSON());
+        o.put("latency", latency);
+
         return o;
     }
 
     public void setCacheTime(long cacheTime) {
         this.cacheTime = cacheTime;
     }
-    
-    public long getCacheTime() {
-        return this.cacheTime;
-    }
 
 }
@@ -0,0 +1,203 @@
+package net.resthub.server.query;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * QueryStore: append-only file of registered queries. Each line is a JSON
+ * record: add (id, md5, sql, time), access (id, time) or remove (id).
+ * File is compacted on open and when dead records dominate.
+ * @author valdo
+ */
+@Log4j
+public class QueryStore implements AutoCloseable {
+
+    private static final String OP = "op";
+    private static final String OP_ADD = "add";
+    private static final String OP_ACCESS = "access";
+    private static final String OP_REMOVE = "remove";
+    private static final int COMPACT_RATIO = 4;
+
+    private final File file;
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private Writer writer;
+    private int records = 0;
+
+    public QueryStore(File file) throws IOException {
+        this.file = file;
+        load();
+        compact();
+    }
+
+    /**
+     * Stored queries.
+     * @return entries by query id
+     */
+    public synchronized Collection<Entry> getEntries() {
+        return entries.values();
+    }
+
+    public synchronized void add(QueryId qid, long time) {
+        add(qid.getId(), qid.getMd5(), qid.getSql(), time);
+    }
+
+    public synchronized void add(String id, String md5, String sql, long time) {
+        Entry e = new Entry(id, md5, sql);
+        e.lastAccess = time;
+        entries.put(e.getId(), e);
+        write(e.toJSON());
+    }
+
+    public synchronized void access(String id, long time) {
+        Entry e = entries.get(id);
+        if (e != null && e.lastAccess < time) {
+            e.lastAccess = time;
+            try {
+                write(new JSONObject().put(OP, OP_ACCESS).put("id", id).put("time", time));
+            } catch (JSONException ex) {
+                log.error("Error while writing query store", ex);
+            }
+        }
+    }
+
+    public synchronized void remove(String id) {
+        if (entries.remove(id) != null) {
+            try {
+                write(new JSONObject().put(OP, OP_REMOVE).put("id", id));
+            } catch (JSONException ex) {
+                log.error("Error while writing query store", ex);
+            }
+        }
+    }
+
+    /**
+     * Rewrite the file with live entries only if dead records dominate.
+     */
+    public synchronized void compactIfNeeded() {
+        if (records > COMPACT_RATIO * Math.max(entries.size(), 16)) {
+            try {
+                compact();
+            } catch (IOException ex) {
+                log.error("Error while compacting query store", ex);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+
+    private void load() throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                try {
+                    JSONObject o = new JSONObject(line);
+                    String id = o.getString("id");
+                    switch (o.getString(OP)) {
+                        case OP_ADD:
+                            Entry e = new Entry(id, o.getString("md5"), o.getString("sql"));
+                            e.lastAccess = o.getLong("time");
+                            entries.put(id, e);
+                            break;
+                        case OP_ACCESS:
+                            if (entries.containsKey(id)) {
+                                entries.get(id).lastAccess = o.getLong("time");
+                            }
+                            break;
+                        case OP_REMOVE:
+                            entries.remove(id);
+                            break;
+                    }
+                } catch (JSONException ex) {
+                    // Partially written record at the end of file
+                    log.warn(String.format("Skipping query store record: %s", ex.getMessage()));
+                }
+            }
+        }
+        log.info(String.format("%d queries loaded from %s", entries.size(), file));
+    }
+
+    private void compact() throws IOException {
+        close();
+        File tmp = new File(file.getPath() + ".tmp");
+        try (Writer w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8))) {
+            for (Entry e: entries.values()) {
+                w.write(e.toJSON().toString());
+                w.write("\n");
+            }
+        }
+        if (file.exists() && !file.delete()) {
+            throw new IOException(String.format("Can not replace %s", file));
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException(String.format("Can not rename %s to %s", tmp, file));
+        }
+        this.records = entries.size();
+        this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+    }
+
+    private void write(JSONObject o) {
+        try {
+            writer.write(o.toString());
+            writer.write("\n");
+            writer.flush();
+            records++;
+        } catch (IOException ex) {
+            log.error("Error while writing query store", ex);
+        }
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class Entry {
+
+        private final String id;
+        private final String md5;
+        private final String sql;
+        private long lastAccess;
+
+        private JSONObject toJSON() {
+            try {
+                return new JSONObject()
+                    .put(OP, OP_ADD)
+                    .put("id", id)
+                    .put("md5", md5)
+                    .put("sql", sql)
+                    .put("time", lastAccess);
+            } catch (JSONException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+
+    }
+
+}
@@ -41,6 +41,7 @@ public class UpdateJob implements Job {
         }
         
         qf.cleanQueries();
+        ccf.cleanResults();
         
         if (log.isDebugEnabled()) {
             ccf.logStats();
@@ -0,0 +1,120 @@
+package net.resthub.server.util;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * RequestTiming: per request stage durations for the Server-Timing header.
+ * Bound to the request thread, stages running on other threads should
+ * capture the current timing beforehand. When timing is not started all
+ * calls reduce to a thread local lookup.
+ * @author valdo
+ */
+public class RequestTiming {
+
+    public enum Stage {
+        LOOKUP,
+        DECODE,
+        CACHE,
+        EXECUTE,
+        FETCH,
+        
+        /**
+         * Conversion done before the response is sent. Lazily written 
+         * representations (NDJSON, CSV, XML) encode rows after the header 
+         * is sent, which is not included.
+         */
+        CONVERT
+    }
+
+    public enum CacheFlag {
+        HIT,
+        MISS,
+        COALESCED
+    }
+
+    private static final ThreadLocal<RequestTiming> CURRENT = new ThreadLocal<>();
+
+    private final long startTime = System.nanoTime();
+    private final AtomicLongArray durations = new AtomicLongArray(Stage.values().length);
+    private volatile CacheFlag cacheFlag = null;
+
+    public static RequestTiming start() {
+        RequestTiming timing = new RequestTiming();
+        CURRENT.set(timing);
+        return timing;
+    }
+
+    public static RequestTiming current() {
+        return CURRENT.get();
+    }
+
+    public static void clear() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Stage start.
+     * @return start time or 0 if timing is not started
+     */
+    public static long begin() {
+        return CURRENT.get() == null ? 0L : System.nanoTime();
+    }
+
+    /**
+     * Stage end.
+     * @param stage
+     * @param begin start time as returned by begin()
+     */
+    public static void end(Stage stage, long begin) {
+        RequestTiming timing = CURRENT.get();
+        if (timing != null && begin != 0L) {
+            timing.add(stage, System.nanoTime() - begin);
+        }
+    }
+
+    public static void flag(CacheFlag flag) {
+        RequestTiming timing = CURRENT.get();
+        if (timing != null) {
+            timing.cacheFlag = flag;
+        }
+    }
+
+    public void add(Stage stage, long nanos) {
+        durations.addAndGet(stage.ordinal(), nanos);
+    }
+
+    public long getDuration(Stage stage) {
+        return durations.get(stage.ordinal());
+    }
+
+    public CacheFlag getCacheFlag() {
+        return cacheFlag;
+    }
+
+    /**
+     * Server-Timing header value, durations in milliseconds.
+     * @return header value
+     */
+    public String getHeader() {
+        StringBuilder sb = new StringBuilder();
+        for (Stage s: Stage.values()) {
+            long d = durations.get(s.ordinal());
+            if (d == 0L && !(s == Stage.CACHE && cacheFlag != null)) {
+                continue;
+            }
+            sb.append(s.name().toLowerCase(Locale.ENGLISH)).append(";dur=").append(millis(d));
+            if (s == Stage.CACHE && cacheFlag != null) {
+                sb.append(";desc=\"").append(cacheFlag.name().toLowerCase(Locale.ENGLISH)).append("\"");
+            }
+            sb.append(", ");
+        }
+        sb.append("total;dur=").append(millis(System.nanoTime() - startTime));
+        return sb.toString();
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ENGLISH, "%.3f", nanos / 1000000.0);
+    }
+
+}
@@ -0,0 +1,56 @@
+package net.resthub.server.test.cache;
+
+import junit.framework.TestCase;
+import net.resthub.server.cache.DecayingRate;
+import net.resthub.server.cache.TokenBucket;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * DecayingRateTest
+ * @author valdo
+ */
+@RunWith(JUnit4.class)
+public class DecayingRateTest extends TestCase {
+
+    @Test
+    public void rateTest() {
+        long tau = 60000;
+        DecayingRate rate = new DecayingRate(tau, 0);
+
+        // Steady 1 access per second converges to 60 accesses per tau
+        long now = 0;
+        for (int i = 0; i < 600; i++) {
+            now += 1000;
+            rate.record(now);
+        }
+        assertEquals(60.0, rate.getCount(now), 1.0);
+        assertEquals(1.0, rate.getRate(now), 0.05);
+
+        // Traffic stops, count decays by e each tau
+        double count = rate.getCount(now);
+        assertEquals(count / Math.E, rate.getCount(now + tau), 0.01);
+        assertTrue(rate.getCount(now + 10 * tau) < 0.01);
+    }
+
+    @Test
+    public void budgetTest() {
+        TokenBucket bucket = new TokenBucket(2.0, 2.0, 0);
+
+        assertTrue(bucket.tryAcquire(0));
+        assertTrue(bucket.tryAcquire(0));
+        assertFalse(bucket.tryAcquire(0));
+
+        // Half a second refills one permit
+        assertFalse(bucket.tryAcquire(400));
+        assertTrue(bucket.tryAcquire(500));
+        assertFalse(bucket.tryAcquire(500));
+
+        // Never exceeds capacity
+        assertTrue(bucket.tryAcquire(100000));
+        assertTrue(bucket.tryAcquire(100000));
+        assertFalse(bucket.tryAcquire(100000));
+    }
+
+}
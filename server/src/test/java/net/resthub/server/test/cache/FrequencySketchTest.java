@@ -0,0 +1,65 @@
+package net.resthub.server.test.cache;
+
+import junit.framework.TestCase;
+import net.resthub.server.cache.CacheKey;
+import net.resthub.server.cache.FrequencySketch;
+import net.resthub.server.handler.HandlerId;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * FrequencySketchTest
+ * @author valdo
+ */
+@RunWith(JUnit4.class)
+public class FrequencySketchTest extends TestCase {
+
+    @Test
+    public void frequencyTest() {
+        FrequencySketch sketch = new FrequencySketch(1024);
+        CacheKey hot = new CacheKey("q1", new HandlerId(0L, 1L));
+        CacheKey cold = new CacheKey("q1", new HandlerId(0L, 2L));
+        
+        assertEquals(0, sketch.frequency(hot));
+        
+        for (int i = 0; i < 10; i++) {
+            sketch.increment(hot);
+        }
+        sketch.increment(cold);
+        
+        assertEquals(10, sketch.frequency(hot));
+        assertTrue(sketch.frequency(cold) >= 1);
+        assertTrue(sketch.frequency(cold) < sketch.frequency(hot));
+        
+        // Saturates at 15
+        for (int i = 0; i < 10; i++) {
+            sketch.increment(hot);
+        }
+        assertEquals(15, sketch.frequency(hot));
+    }
+
+    @Test
+    public void agingTest() {
+        FrequencySketch sketch = new FrequencySketch(16);
+        CacheKey hot = new CacheKey("q1", new HandlerId(0L, 1L));
+        
+        for (int i = 0; i < 12; i++) {
+            sketch.increment(hot);
+        }
+        assertEquals(12, sketch.frequency(hot));
+        
+        // Sample size is 10 * width, reset halves the counters
+        int n = 0;
+        while (sketch.getSize() > 0 && n < 10 * sketch.getWidth()) {
+            int before = sketch.getSize();
+            sketch.increment(new CacheKey("q2", new HandlerId(0L, n++)));
+            if (sketch.getSize() < before) {
+                break;
+            }
+        }
+        
+        assertTrue(sketch.frequency(hot) <= 7);
+    }
+    
+}
@@ -0,0 +1,142 @@
+package net.resthub.server.test.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import junit.framework.TestCase;
+import net.resthub.server.cache.CcCount;
+import net.resthub.server.cache.CcLob;
+import net.resthub.server.cache.OffHeapStore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * OffHeapStoreTest
+ * @author valdo
+ */
+@RunWith(JUnit4.class)
+public class OffHeapStoreTest extends TestCase {
+
+    private static final int BLOCK = 256;
+    private static final int SLAB = 4 * BLOCK;
+
+    @Test
+    public void putGetTest() {
+        OffHeapStore store = new OffHeapStore(4 * SLAB, SLAB, BLOCK);
+        
+        CcLob lob = lob(3 * BLOCK, (byte) 7);
+        assertTrue(store.put("q1", 1, lob));
+        assertTrue(store.put("q1", 2, count(42L)));
+        
+        CcLob l = (CcLob) store.get("q1", 1);
+        assertNotNull(l);
+        assertEquals(lob.getLength(), l.getLength());
+        assertEquals(lob.getValue().length, l.getValue().length);
+        assertEquals(7, l.getValue()[BLOCK * 2 + 1]);
+        
+        assertEquals(42L, ((CcCount) store.get("q1", 2)).getValue().longValue());
+        assertNull(store.get("q1", 3));
+        assertNull(store.get("q2", 1));
+        assertEquals(2, store.getHitCount());
+        assertEquals(2, store.getMissCount());
+        
+        // Replace
+        assertTrue(store.put("q1", 2, count(43L)));
+        assertEquals(43L, ((CcCount) store.get("q1", 2)).getValue().longValue());
+        assertEquals(2, store.getSize());
+    }
+
+    @Test
+    public void evictionTest() {
+        OffHeapStore store = new OffHeapStore(2 * SLAB, SLAB, BLOCK);
+        final List<Object> evicted = new ArrayList<>();
+        store.setEvictionListener(new OffHeapStore.EvictionListener() {
+
+            @Override
+            public void evicted(String name, Object id) {
+                assertEquals("q1", name);
+                evicted.add(id);
+            }
+            
+        });
+        
+        // Too large
+        assertFalse(store.put("q1", 0, lob(3 * SLAB, (byte) 1)));
+        
+        for (int i = 0; i < 4; i++) {
+            // Each value takes 2 blocks, 8 blocks fit
+            assertTrue(store.put("q1", i, lob(BLOCK, (byte) i)));
+        }
+        
+        // Access 0 to make 1 least recently used
+        assertNotNull(store.get("q1", 0));
+        
+        assertTrue(store.put("q1", 4, lob(BLOCK, (byte) 4)));
+        assertEquals(Arrays.<Object>asList(1), evicted);
+        assertNull(store.get("q1", 1));
+        assertNotNull(store.get("q1", 0));
+        assertEquals(4, ((CcLob) store.get("q1", 4)).getValue()[0]);
+        assertTrue(store.getEvictionCount() > 0);
+        assertTrue(store.getUsedBytes() <= store.getCapacity());
+    }
+
+    @Test
+    public void removeTest() {
+        OffHeapStore store = new OffHeapStore(2 * SLAB, SLAB, BLOCK);
+        store.put("q1", 1, count(1L));
+        store.put("q1", 2, count(2L));
+        store.put("q2", 1, count(3L));
+        
+        store.remove("q1", 1);
+        assertNull(store.get("q1", 1));
+        
+        store.removeAll("q1");
+        assertNull(store.get("q1", 2));
+        assertNotNull(store.get("q2", 1));
+        assertEquals(1, store.getSize());
+        
+        store.removeAll("q2");
+        assertEquals(0, store.getUsedBytes());
+        
+        // Removed values are dropped from the name index
+        store.put("q1", 3, count(4L));
+        store.remove("q1", 3);
+        store.put("q1", 3, count(5L));
+        store.removeAll("q1");
+        assertEquals(0, store.getSize());
+        assertEquals(0, store.getUsedBytes());
+    }
+    
+    @Test
+    public void capacityTest() {
+        // Less than a slab is rounded up to one slab
+        OffHeapStore store = new OffHeapStore(SLAB / 2, SLAB, BLOCK);
+        assertEquals(SLAB, store.getCapacity());
+        assertTrue(store.put("q1", 1, lob(BLOCK, (byte) 1)));
+        assertNotNull(store.get("q1", 1));
+
+        try {
+            new OffHeapStore(0, SLAB, BLOCK);
+            fail("Zero capacity accepted");
+        } catch (IllegalArgumentException ex) {
+            // Expected
+        }
+    }
+
+    private static CcLob lob(int size, byte b) {
+        CcLob lob = new CcLob();
+        byte[] value = new byte[size];
+        Arrays.fill(value, b);
+        lob.setValue(value);
+        lob.setLength(size);
+        return lob;
+    }
+
+    private static CcCount count(Long v) {
+        CcCount c = new CcCount();
+        c.setValue(v);
+        return c;
+    }
+    
+}
@@ -0,0 +1,136 @@
+package net.resthub.server.test.cache;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import junit.framework.TestCase;
+import net.resthub.server.cache.CcCount;
+import net.resthub.server.cache.ResultStore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * ResultStoreTest
+ * @author valdo
+ */
+@RunWith(JUnit4.class)
+public class ResultStoreTest extends TestCase {
+
+    @Test
+    public void roundTripTest() throws Exception {
+        File dir = createDir();
+        long expTime = System.currentTimeMillis() + 60000L;
+        
+        try (ResultStore store = new ResultStore(dir)) {
+            assertNull(store.read("q1", "k1"));
+            store.write("q1", "k1", count(10L), expTime);
+            store.write("q1", "k2", count(20L), ResultStore.ETERNAL);
+        }
+        
+        try (ResultStore store = new ResultStore(dir)) {
+            assertEquals(2, store.getSize());
+            
+            ResultStore.Entry e = store.read("q1", "k1");
+            assertNotNull(e);
+            assertEquals(expTime, e.getExpTime());
+            assertEquals(Long.valueOf(10L), ((CcCount) e.getValue()).getValue());
+            
+            e = store.read("q1", "k2");
+            assertNotNull(e);
+            assertEquals(ResultStore.ETERNAL, e.getExpTime());
+            assertEquals(Long.valueOf(20L), ((CcCount) e.getValue()).getValue());
+            
+            assertNull(store.read("q1", "k3"));
+            assertNull(store.read("q2", "k1"));
+        }
+    }
+    
+    @Test
+    public void expiredTest() throws Exception {
+        File dir = createDir();
+        
+        try (ResultStore store = new ResultStore(dir)) {
+            store.write("q1", "k1", count(10L), System.currentTimeMillis() - 1000L);
+            store.write("q1", "k2", count(20L), System.currentTimeMillis() + 500L);
+        }
+        
+        try (ResultStore store = new ResultStore(dir)) {
+            
+            // Expired results are dropped at boot
+            assertFalse(new File(new File(dir, "q1"), "k1").exists());
+            assertEquals(1, store.getSize());
+            assertNull(store.read("q1", "k1"));
+            
+            Thread.sleep(600L);
+            assertNull(store.read("q1", "k2"));
+            assertEquals(0, store.getSize());
+            assertFalse(new File(new File(dir, "q1"), "k2").exists());
+        }
+    }
+    
+    @Test
+    public void truncatedTest() throws Exception {
+        File dir = createDir();
+        
+        try (ResultStore store = new ResultStore(dir)) {
+            store.write("q1", "k1", count(10L), ResultStore.ETERNAL);
+            store.write("q1", "k2", count(20L), ResultStore.ETERNAL);
+        }
+        
+        // Value cut off and header cut off
+        File f1 = new File(new File(dir, "q1"), "k1");
+        try (RandomAccessFile raf = new RandomAccessFile(f1, "rw")) {
+            raf.setLength(raf.length() / 2);
+        }
+        File f2 = new File(new File(dir, "q1"), "k2");
+        try (RandomAccessFile raf = new RandomAccessFile(f2, "rw")) {
+            raf.setLength(2);
+        }
+        
+        try (ResultStore store = new ResultStore(dir)) {
+            assertFalse(f2.exists());
+            assertNull(store.read("q1", "k2"));
+            
+            assertNull(store.read("q1", "k1"));
+            assertFalse(f1.exists());
+            assertEquals(0, store.getSize());
+        }
+    }
+    
+    @Test
+    public void removeAllTest() throws Exception {
+        File dir = createDir();
+        
+        try (ResultStore store = new ResultStore(dir)) {
+            store.write("q1", "k1", count(10L), ResultStore.ETERNAL);
+            store.write("q1", "k2", count(20L), ResultStore.ETERNAL);
+            store.write("q2", "k1", count(30L), ResultStore.ETERNAL);
+            store.removeAll("q1");
+            assertNull(store.read("q1", "k1"));
+        }
+        
+        assertFalse(new File(dir, "q1").exists());
+        
+        try (ResultStore store = new ResultStore(dir)) {
+            assertEquals(1, store.getSize());
+            assertNull(store.read("q1", "k1"));
+            assertNull(store.read("q1", "k2"));
+            assertNotNull(store.read("q2", "k1"));
+        }
+    }
+    
+    private static File createDir() throws Exception {
+        File dir = File.createTempFile("results", ".store");
+        dir.delete();
+        dir.mkdirs();
+        dir.deleteOnExit();
+        return dir;
+    }
+    
+    private static CcCount count(long value) {
+        CcCount c = new CcCount();
+        c.setValue(value);
+        return c;
+    }
+    
+}
@@ -0,0 +1,125 @@
+package net.resthub.server.test.cache;
+
+import com.google.common.base.Predicate;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import junit.framework.TestCase;
+import net.resthub.server.cache.TimingWheel;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * TimingWheelTest
+ * @author valdo
+ */
+@RunWith(JUnit4.class)
+public class TimingWheelTest extends TestCase {
+
+    @Test
+    public void fireTest() throws Exception {
+        try (TimingWheel<Integer> wheel = new TimingWheel<>("test", 10, 8, 1, 16)) {
+            final CountDownLatch latch = new CountDownLatch(1);
+            long start = System.nanoTime();
+
+            // Delay longer than the wheel round
+            wheel.schedule(1, 200, new Runnable() {
+
+                @Override
+                public void run() {
+                    latch.countDown();
+                }
+
+            });
+
+            assertTrue(wheel.isPending(1));
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 190);
+            assertFalse(wheel.isPending(1));
+            assertEquals(1, wheel.getFiredCount());
+        }
+    }
+
+    @Test
+    public void dedupTest() throws Exception {
+        try (TimingWheel<Integer> wheel = new TimingWheel<>("test", 10, 8, 1, 16)) {
+            final AtomicInteger first = new AtomicInteger();
+            final CountDownLatch latch = new CountDownLatch(1);
+
+            wheel.schedule(1, 50, new Runnable() {
+
+                @Override
+                public void run() {
+                    first.incrementAndGet();
+                }
+
+            });
+            wheel.schedule(1, 100, new Runnable() {
+
+                @Override
+                public void run() {
+                    latch.countDown();
+                }
+
+            });
+            wheel.schedule(2, 50, new Runnable() {
+
+                @Override
+                public void run() {
+                    first.incrementAndGet();
+                }
+
+            });
+            wheel.cancel(2);
+
+            assertEquals(1, wheel.getPendingCount());
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            assertEquals(0, first.get());
+            assertEquals(3, wheel.getScheduledCount());
+            assertEquals(1, wheel.getFiredCount());
+        }
+    }
+
+    @Test
+    public void cancelAllTest() throws Exception {
+        try (TimingWheel<Integer> wheel = new TimingWheel<>("test", 10, 8, 1, 16)) {
+            final AtomicInteger fired = new AtomicInteger();
+            final Runnable cancelled = new Runnable() {
+
+                @Override
+                public void run() {
+                    fired.incrementAndGet();
+                }
+
+            };
+            final CountDownLatch latch = new CountDownLatch(1);
+
+            wheel.schedule(1, 50, cancelled);
+            wheel.schedule(2, 100, new Runnable() {
+
+                @Override
+                public void run() {
+                    latch.countDown();
+                }
+
+            });
+
+            assertEquals(Collections.singletonList(1), wheel.cancelAll(new Predicate<Runnable>() {
+
+                @Override
+                public boolean apply(Runnable task) {
+                    return task == cancelled;
+                }
+
+            }));
+
+            assertFalse(wheel.isPending(1));
+            assertTrue(wheel.isPending(2));
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            assertEquals(0, fired.get());
+        }
+    }
+
+}
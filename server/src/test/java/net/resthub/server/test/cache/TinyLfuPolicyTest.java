@@ -0,0 +1,55 @@
+package net.resthub.server.test.cache;
+
+import junit.framework.TestCase;
+import net.resthub.server.cache.CacheKey;
+import net.resthub.server.cache.FrequencySketch;
+import net.resthub.server.cache.TinyLfuPolicy;
+import net.resthub.server.handler.HandlerId;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * TinyLfuPolicyTest
+ * @author valdo
+ */
+@RunWith(JUnit4.class)
+public class TinyLfuPolicyTest extends TestCase {
+
+    @Test
+    public void admitTest() {
+        FrequencySketch sketch = new FrequencySketch(1024);
+        TinyLfuPolicy policy = new TinyLfuPolicy(sketch, new TinyLfuPolicy.Weigher() {
+
+            @Override
+            public long weigh(Object key) {
+                return 0;
+            }
+
+        });
+
+        CacheKey hot = new CacheKey("q1", new HandlerId(0L, 1L));
+        CacheKey cold = new CacheKey("q1", new HandlerId(0L, 2L));
+        for (int i = 0; i < 5; i++) {
+            sketch.increment(hot);
+        }
+        sketch.increment(cold);
+
+        // One-off key does not push out the frequent one
+        assertFalse(policy.admit(cold, 1024, hot, 1024));
+        assertTrue(policy.admit(hot, 1024, cold, 1024));
+        assertEquals(1, policy.getRejectedCount());
+
+        // Nothing to compete with
+        assertTrue(policy.admit(cold, 1024, null, 0));
+
+        // Large page of the same frequency is less valuable
+        sketch.increment(cold);
+        sketch.increment(cold);
+        sketch.increment(cold);
+        sketch.increment(cold);
+        assertFalse(policy.admit(cold, 1024 * 1024, hot, 1024));
+        assertEquals(2, policy.getRejectedCount());
+    }
+
+}
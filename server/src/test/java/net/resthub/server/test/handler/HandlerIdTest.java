@@ -0,0 +1,58 @@
+package net.resthub.server.test.handler;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import junit.framework.TestCase;
+import net.resthub.server.handler.HandlerId;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * HandlerIdTest
+ * @author valdo
+ */
+@RunWith(JUnit4.class)
+public class HandlerIdTest extends TestCase {
+
+    private static HandlerId id(Object... values) {
+        HandlerId.Encoder enc = new HandlerId.Encoder();
+        for (Object v: values) {
+            enc.add(v);
+        }
+        return enc.toId();
+    }
+
+    @Test
+    public void equalityTest() {
+        HandlerId a = id(HandlerIdTest.class, "q1", 100, 2, "a.id", new BigDecimal("10"), "a.d", new Date(1000L));
+        HandlerId b = id(HandlerIdTest.class, "q1", 100, 2, "a.id", new BigDecimal("10"), "a.d", new Date(1000L));
+
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        assertEquals(a.toString(), b.toString());
+        assertEquals(32, a.toString().length());
+
+        assertEquals(new HandlerId(1L, 2L), new HandlerId(1L, 2L));
+        assertFalse(new HandlerId(1L, 2L).equals(new HandlerId(2L, 2L)));
+    }
+
+    @Test
+    public void canonicalEncodingTest() {
+        // Separators within values
+        assertFalse(id("a|b", "c").equals(id("a", "b|c")));
+        assertFalse(id((Object) new Object[] { "a, b" }).equals(id((Object) new Object[] { "a", "b" })));
+        assertFalse(id((Object) new Object[] { "a" }, "b").equals(id((Object) new Object[] { "a", "b" })));
+
+        // Types
+        assertFalse(id("1").equals(id(new BigDecimal("1"))));
+        assertFalse(id((Object) null).equals(id("null")));
+        assertFalse(id(null, "a").equals(id("a", null)));
+        assertFalse(id(new Date(1L)).equals(id(1L)));
+
+        // Pagination
+        assertFalse(id("q1", 10, 1).equals(id("q1", 1, 10)));
+        assertFalse(id("q1", null, null).equals(id("q1")));
+    }
+
+}
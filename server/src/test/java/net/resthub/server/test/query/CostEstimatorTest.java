@@ -0,0 +1,81 @@
+package net.resthub.server.test.query;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import junit.framework.TestCase;
+import net.resthub.exception.QueryException;
+import net.resthub.server.ServerAppConfig;
+import net.resthub.server.query.CostEstimator;
+import net.resthub.server.query.QueryPlan;
+import net.resthub.server.table.TableId;
+import net.resthub.server.test.util.InMemoryPlanReader;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * CostEstimatorTest
+ * @author valdo
+ */
+@RunWith(JUnit4.class)
+public class CostEstimatorTest extends TestCase {
+
+    private static final String CHEAP = "select * from a";
+    private static final String EXPENSIVE = "select * from a, b";
+
+    private final TableId a = new TableId("ns", "a");
+    private final TableId b = new TableId("ns", "b");
+    private final List<TableId> tables = Arrays.asList(a, b);
+
+    private final InMemoryPlanReader reader = new InMemoryPlanReader()
+        .add(CHEAP, 10, 100)
+        .add(EXPENSIVE, 100000, 1000000);
+
+    @Test
+    public void estimateTest() {
+        ServerAppConfig cfg = new ServerAppConfig();
+        CostEstimator estimator = new CostEstimator(reader, cfg);
+
+        // No ceilings, not explained
+        assertNull(estimator.estimate("c", EXPENSIVE, tables));
+        assertEquals(0, reader.getExplained());
+
+        cfg.setCostCeiling("ns", 1000000);
+        QueryPlan plan = estimator.estimate("c", EXPENSIVE, tables);
+        assertEquals(100000, plan.getCost());
+        assertEquals(1000000, plan.getCardinality());
+        assertFalse(plan.isExpensive());
+
+        // Not explainable
+        assertNull(estimator.estimate("c", "select 1 from dual", tables));
+        assertEquals(2, reader.getExplained());
+    }
+
+    @Test
+    public void ceilingTest() {
+        ServerAppConfig cfg = new ServerAppConfig();
+        cfg.setCostCeiling("ns", 50000);
+        cfg.setCostCeiling(b, 1000);
+        CostEstimator estimator = new CostEstimator(reader, cfg);
+
+        assertFalse(estimator.estimate("c", CHEAP, tables).isExpensive());
+
+        // Table ceiling overrides namespace
+        assertEquals(Long.valueOf(50000), cfg.getCostCeiling(a));
+        assertEquals(Long.valueOf(1000), cfg.getCostCeiling(b));
+        assertNull(cfg.getCostCeiling(new TableId("other", "a")));
+
+        try {
+            estimator.estimate("c", EXPENSIVE, Collections.singletonList(a));
+            fail("Expensive query accepted");
+        } catch (QueryException ex) {
+            assertTrue(ex.getMessage().contains("ns.a"));
+        }
+
+        // Throttle instead of reject
+        cfg.setRejectExpensiveQueries(false);
+        assertTrue(estimator.estimate("c", EXPENSIVE, tables).isExpensive());
+    }
+
+}
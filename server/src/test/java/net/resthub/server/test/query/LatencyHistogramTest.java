@@ -0,0 +1,65 @@
+package net.resthub.server.test.query;
+
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+import net.resthub.server.query.LatencyHistogram;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * LatencyHistogramTest
+ * @author valdo
+ */
+@RunWith(JUnit4.class)
+public class LatencyHistogramTest extends TestCase {
+
+    @Test
+    public void percentileTest() {
+        LatencyHistogram h = new LatencyHistogram();
+        assertEquals(0, h.getPercentile(0.99));
+
+        // 99 fast and 1 slow
+        for (int i = 0; i < 99; i++) {
+            h.recordMillis(3);
+        }
+        h.recordMillis(3000);
+
+        assertEquals(100, h.getCount());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(99 * 3 + 3000), h.getSum());
+
+        // Within the 2-5 ms bucket
+        long p50 = h.getPercentile(0.5);
+        assertTrue(p50 > TimeUnit.MILLISECONDS.toNanos(2));
+        assertTrue(p50 <= TimeUnit.MILLISECONDS.toNanos(5));
+
+        // Within the 2-5 s bucket
+        long max = h.getPercentile(1.0);
+        assertTrue(max > TimeUnit.SECONDS.toNanos(2));
+        assertTrue(max <= TimeUnit.SECONDS.toNanos(5));
+    }
+
+    @Test
+    public void bucketsTest() {
+        long[] bounds = LatencyHistogram.getBounds();
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(50), bounds[0]);
+        assertEquals(TimeUnit.SECONDS.toNanos(100), bounds[bounds.length - 1]);
+
+        LatencyHistogram h = new LatencyHistogram();
+        h.record(bounds[0]);
+        h.record(bounds[0] + 1);
+        h.record(TimeUnit.SECONDS.toNanos(1000));
+        assertEquals(1, h.getBucket(0));
+        assertEquals(1, h.getBucket(1));
+        assertEquals(1, h.getBucket(h.getBucketCount() - 1));
+
+        // Aggregation
+        LatencyHistogram sum = new LatencyHistogram();
+        sum.add(h);
+        sum.add(h);
+        assertEquals(6, sum.getCount());
+        assertEquals(2, sum.getBucket(0));
+        assertEquals(2 * h.getSum(), sum.getSum());
+    }
+
+}
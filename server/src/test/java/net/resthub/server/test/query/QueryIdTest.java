@@ -0,0 +1,69 @@
+package net.resthub.server.test.query;
+
+import java.util.Map;
+import junit.framework.TestCase;
+import net.resthub.model.MdType;
+import net.resthub.server.parser.literal.LiteralSelectParser;
+import net.resthub.server.query.QueryId;
+import net.sf.jsqlparser.parser.CCJSqlParserManager;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * QueryIdTest
+ * @author valdo
+ */
+@RunWith(JUnit4.class)
+public class QueryIdTest extends TestCase {
+
+    private final CCJSqlParserManager pm = new CCJSqlParserManager();
+
+    @Test
+    public void parameterizeTest() throws Exception {
+        QueryId q1 = new QueryId("select b.id, 'x' as c from a.b b where b.id = 123 and b.name like 'x''y%'", null, true, pm);
+        QueryId q2 = new QueryId("select b.id, 'x' as c from a.b b where b.id = 124 and b.name like 'z%'", null, true, pm);
+
+        assertEquals(q1.getMd5(), q2.getMd5());
+        assertEquals(q1.getSql(), q2.getSql());
+        assertFalse(q1.getLiteralMd5().equals(q2.getLiteralMd5()));
+        assertTrue(q1.getSql().contains("'x' AS c") || q1.getSql().contains("'x' as c"));
+
+        Map<String, String> literals = q1.getLiterals();
+        assertEquals(2, literals.size());
+        assertEquals("123", literals.get("lit__n1"));
+        assertEquals("x'y%", literals.get("lit__s2"));
+        assertEquals(MdType.NUMBER, LiteralSelectParser.getType("lit__n1"));
+        assertEquals(MdType.STRING, LiteralSelectParser.getType("lit__s2"));
+        assertEquals(MdType.STRING, LiteralSelectParser.getType("id"));
+
+        // Normalized SQL is stable
+        QueryId q3 = new QueryId(q1.getSql(), null, true, pm);
+        assertTrue(q3.getLiterals().isEmpty());
+        assertEquals(q1.getMd5(), q3.getMd5());
+    }
+
+    @Test
+    public void predicatesTest() throws Exception {
+        QueryId q = new QueryId("select * from a.b b where 1 = 1 and b.id in (1, -2, 3.5) "
+                + "and b.x between 1 and 10 and b.y = (select max(c.y) from a.c c where c.z > 0)", null, true, pm);
+        Map<String, String> literals = q.getLiterals();
+        assertEquals(6, literals.size());
+        assertTrue(literals.containsValue("-2"));
+        assertTrue(literals.containsValue("3.5"));
+        assertTrue(literals.containsValue("0"));
+        assertFalse(q.getSql().contains(":lit__n1 = :lit__n2"));
+    }
+
+    @Test
+    public void disabledTest() throws Exception {
+        QueryId q1 = new QueryId("select * from a.b b where b.id = 123", null, false, pm);
+        assertTrue(q1.getLiterals().isEmpty());
+        assertEquals(q1.getMd5(), q1.getLiteralMd5());
+
+        // Internal parameter names in use
+        QueryId q2 = new QueryId("select * from a.b b where b.id = :lit__n1 and b.x = 1", null, true, pm);
+        assertTrue(q2.getLiterals().isEmpty());
+    }
+
+}
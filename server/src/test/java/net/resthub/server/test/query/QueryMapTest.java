@@ -0,0 +1,216 @@
+package net.resthub.server.test.query;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.assistedinject.FactoryModuleBuilder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import junit.framework.TestCase;
+import net.resthub.ConnectionFactory;
+import net.resthub.factory.TableBuilder;
+import net.resthub.model.MdColumn;
+import net.resthub.server.factory.MetadataFactoryIf;
+import net.resthub.server.factory.ResourceFactory;
+import net.resthub.server.query.Query;
+import net.resthub.server.query.QueryId;
+import net.resthub.server.query.QueryMap;
+import net.resthub.server.table.TableId;
+import net.resthub.server.test.factory.ConnectionFactoryTest;
+import net.resthub.server.test.factory.MetadataFactoryTest;
+import net.sf.jsqlparser.parser.CCJSqlParserManager;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * QueryMapTest
+ * @author valdo
+ */
+@RunWith(JUnit4.class)
+public class QueryMapTest extends TestCase {
+
+    private static final TableId CUSTOMER = new TableId("test", "customer");
+    private static final TableId PRODUCT = new TableId("test", "product");
+
+    private final ResourceFactory rf;
+
+    public QueryMapTest() {
+        Injector injector = Guice.createInjector(new AbstractModule() {
+
+            @Override
+            protected void configure() {
+                install(new FactoryModuleBuilder().build(ResourceFactory.class));
+                bind(MetadataFactoryIf.class).to(MetadataFactoryTest.class);
+                bind(CCJSqlParserManager.class).toInstance(new CCJSqlParserManager());
+                bind(ConnectionFactory.class).toInstance(new ConnectionFactoryTest());
+                bind(TableBuilder.class).to(NoColumnsTableBuilder.class);
+            }
+        });
+        this.rf = injector.getInstance(ResourceFactory.class);
+    }
+
+    @Test
+    public void evictionTest() throws Exception {
+        QueryMap map = new QueryMap(2);
+        Query q1 = query("select * from test.customer c");
+        Query q2 = query("select * from test.product p");
+        Query q3 = query("select c.id from test.customer c");
+
+        assertTrue(map.add(q1).isEmpty());
+        Thread.sleep(2);
+        assertTrue(map.add(q2).isEmpty());
+        Thread.sleep(2);
+
+        // q2 becomes the least recently used
+        assertSame(q1, map.get(q1.getQid().getId()));
+
+        List<String> evicted = map.add(q3);
+        assertEquals(Collections.singletonList(q2.getQid().getId()), evicted);
+
+        // Evicted ids are removed by the caller
+        for (String id: evicted) {
+            assertTrue(map.remove(id));
+        }
+        assertEquals(2, map.size());
+        assertNull(map.get(q2.getQid().getId()));
+        assertNull(map.getId(q2.getQid().getMd5()));
+        assertNotNull(map.get(q3.getQid().getId()));
+    }
+
+    @Test
+    public void tableIndexTest() throws Exception {
+        QueryMap map = new QueryMap();
+        Query q1 = query("select * from test.customer c");
+        Query q2 = query("select * from test.customer c, test.product p where c.id = p.id");
+
+        map.add(q1);
+        map.add(q2);
+        assertEquals(ids(q1, q2), map.getQueries(CUSTOMER));
+        assertEquals(ids(q2), map.getQueries(PRODUCT));
+
+        // Re-added query is indexed once
+        map.add(q2);
+        assertEquals(ids(q1, q2), map.getQueries(CUSTOMER));
+        assertEquals(2, map.size());
+
+        assertTrue(map.remove(q2.getQid().getId()));
+        assertFalse(map.remove(q2.getQid().getId()));
+        assertEquals(ids(q1), map.getQueries(CUSTOMER));
+        assertTrue(map.getQueries(PRODUCT).isEmpty());
+
+        map.remove(q1.getQid().getId());
+        assertTrue(map.getQueries(CUSTOMER).isEmpty());
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    public void tableIndexReplaceTest() throws Exception {
+        QueryMap map = new QueryMap();
+        CCJSqlParserManager pm = new CCJSqlParserManager();
+        Query q1 = rf.create(new QueryId("select * from test.customer c", "ffff", pm));
+        Query q2 = rf.create(new QueryId("select * from test.product p", "ffff", pm));
+
+        map.add(q1);
+        assertEquals(ids(q1), map.getQueries(CUSTOMER));
+
+        // Same id with other tables replaces the index entries
+        map.add(q2);
+        assertEquals(1, map.size());
+        assertTrue(map.getQueries(CUSTOMER).isEmpty());
+        assertEquals(ids(q2), map.getQueries(PRODUCT));
+        assertNull(map.getId(q1.getQid().getMd5()));
+        assertEquals("ffff", map.getId(q2.getQid().getMd5()));
+
+        // Returned set is a copy
+        map.getQueries(PRODUCT).clear();
+        assertEquals(ids(q2), map.getQueries(PRODUCT));
+    }
+
+    @Test
+    public void denseEntriesTest() throws Exception {
+        QueryMap map = new QueryMap(10);
+        List<Query> qs = new ArrayList<>();
+        for (int i = 0; i < 14; i++) {
+            qs.add(query("select c.id + " + i + " as v from test.customer c"));
+        }
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(map.add(qs.get(i)).isEmpty());
+        }
+
+        // Removal from the middle keeps the remaining entries reachable
+        for (int i: new int[] { 2, 5, 0 }) {
+            assertTrue(map.remove(qs.get(i).getQid().getId()));
+        }
+        for (int i = 10; i < 13; i++) {
+            assertTrue(map.add(qs.get(i)).isEmpty());
+        }
+        assertEquals(10, map.size());
+        assertEquals(10, map.getQueries().size());
+        assertEquals(10, map.getQueries(CUSTOMER).size());
+
+        // Sampled victim is a registered query other than the added one
+        Query added = qs.get(13);
+        List<String> evicted = map.add(added);
+        assertEquals(1, evicted.size());
+        assertFalse(evicted.contains(added.getQid().getId()));
+        assertNotNull(map.peek(evicted.get(0)));
+        assertTrue(map.remove(evicted.get(0)));
+        assertEquals(10, map.size());
+        assertEquals(10, map.getQueries(CUSTOMER).size());
+    }
+
+    @Test
+    public void lastAccessTest() throws Exception {
+        QueryMap map = new QueryMap();
+        Query q = query("select * from test.customer c");
+        String id = q.getQid().getId();
+
+        assertNull(map.getLastAccess(id));
+        map.add(q);
+
+        long added = map.getLastAccess(id);
+        Thread.sleep(50);
+        assertTrue(Math.abs(map.getLastAccess(id) - added) < 20);
+
+        // Peek does not record access
+        assertSame(q, map.peek(id));
+        assertTrue(Math.abs(map.getLastAccess(id) - added) < 20);
+
+        map.get(id);
+        assertTrue(map.getLastAccess(id) - added >= 30);
+        assertNull(map.peek("unknown"));
+    }
+
+    private Query query(String sql) throws Exception {
+        return rf.create(rf.create(sql));
+    }
+
+    private static Set<String> ids(Query... qs) {
+        Set<String> ret = new HashSet<>();
+        for (Query q: Arrays.asList(qs)) {
+            ret.add(q.getQid().getId());
+        }
+        return ret;
+    }
+
+    /**
+     * Columns are not collected without a database.
+     */
+    public static class NoColumnsTableBuilder extends TableBuilder {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void collectColumns(String connectionName, String sql, List<MdColumn> columns) {
+            // No database
+        }
+
+    }
+
+}
@@ -0,0 +1,64 @@
+package net.resthub.server.test.query;
+
+import java.util.Arrays;
+import junit.framework.TestCase;
+import net.resthub.model.MdArrayBinding;
+import net.resthub.model.MdParameter;
+import net.resthub.model.MdType;
+import net.resthub.server.ServerAppConfig;
+import net.resthub.server.query.QueryParameter;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * QueryParameterTest
+ * @author valdo
+ */
+@RunWith(JUnit4.class)
+public class QueryParameterTest extends TestCase {
+
+    private static Object[] values(int n) {
+        Object[] ret = new Object[n];
+        for (int i = 0; i < n; i++) {
+            ret[i] = i;
+        }
+        return ret;
+    }
+
+    @Test
+    public void padTest() {
+        assertEquals(0, QueryParameter.pad(values(0)).length);
+        assertEquals(1, QueryParameter.pad(values(1)).length);
+        assertEquals(2, QueryParameter.pad(values(2)).length);
+        assertEquals(4, QueryParameter.pad(values(3)).length);
+        assertEquals(4, QueryParameter.pad(values(4)).length);
+        assertEquals(8, QueryParameter.pad(values(5)).length);
+        assertEquals(512, QueryParameter.pad(values(300)).length);
+        assertEquals(QueryParameter.MAX_IN_LIST, QueryParameter.pad(values(600)).length);
+        assertEquals(1200, QueryParameter.pad(values(1200)).length);
+
+        // Padded with the last value
+        assertEquals(Arrays.asList((Object) 0, 1, 2, 3, 4, 4, 4, 4), Arrays.asList(QueryParameter.pad(values(5))));
+    }
+
+    @Test
+    public void bindingTest() {
+        MdParameter p = new MdParameter();
+        p.setName("ids");
+        p.setType(MdType.NUMBER);
+        p.setArray(Boolean.TRUE);
+
+        // Server default, padding is opt-in
+        assertEquals(MdArrayBinding.EXPAND, new ServerAppConfig().getArrayBinding());
+        QueryParameter qp = new QueryParameter(p, "a");
+        assertEquals(3, qp.getBindValues(values(3), MdArrayBinding.EXPAND).length);
+        assertEquals(4, qp.getBindValues(values(3), MdArrayBinding.PAD).length);
+
+        // Parameter binding
+        p.setArrayBinding(MdArrayBinding.EXPAND);
+        qp = new QueryParameter(p, "a");
+        assertEquals(3, qp.getBindValues(values(3), MdArrayBinding.PAD).length);
+    }
+
+}
@@ -0,0 +1,65 @@
+package net.resthub.server.test.query;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.HashMap;
+import java.util.Map;
+import junit.framework.TestCase;
+import net.resthub.server.query.QueryId;
+import net.resthub.server.query.QueryStore;
+import net.sf.jsqlparser.parser.CCJSqlParserManager;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * QueryStoreTest
+ * @author valdo
+ */
+@RunWith(JUnit4.class)
+public class QueryStoreTest extends TestCase {
+
+    @Test
+    public void restoreTest() throws Exception {
+        File file = File.createTempFile("queries", ".store");
+        file.deleteOnExit();
+        CCJSqlParserManager pm = new CCJSqlParserManager();
+        
+        QueryId q1 = new QueryId("select * from a.b", pm);
+        QueryId q2 = new QueryId("select c from a.b", pm);
+        QueryId q3 = new QueryId("select d from a.b", "ffff", pm);
+        assertEquals("ffff", q3.getId());
+        
+        try (QueryStore store = new QueryStore(file)) {
+            store.add(q1, 1000L);
+            store.add(q2, 2000L);
+            store.add(q3, 3000L);
+            store.remove(q2.getId());
+            store.access(q1.getId(), 5000L);
+        }
+        
+        // Partially written record
+        try (FileWriter w = new FileWriter(file, true)) {
+            w.write("{\"op\":\"add\",\"id\":");
+        }
+        
+        try (QueryStore store = new QueryStore(file)) {
+            Map<String, QueryStore.Entry> entries = new HashMap<>();
+            for (QueryStore.Entry e: store.getEntries()) {
+                entries.put(e.getId(), e);
+            }
+            
+            assertEquals(2, entries.size());
+            assertEquals(5000L, entries.get(q1.getId()).getLastAccess());
+            assertEquals(q1.getMd5(), entries.get(q1.getId()).getMd5());
+            assertEquals(q1.getSql(), entries.get(q1.getId()).getSql());
+            assertNull(entries.get(q2.getId()));
+            
+            // Restored query keeps id and md5
+            QueryId r = new QueryId(entries.get("ffff").getSql(), "ffff", pm);
+            assertEquals("ffff", r.getId());
+            assertEquals(q3.getMd5(), r.getMd5());
+        }
+    }
+    
+}
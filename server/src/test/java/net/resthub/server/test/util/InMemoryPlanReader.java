@@ -0,0 +1,36 @@
+package net.resthub.server.test.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import net.resthub.server.query.PlanReader;
+import net.resthub.server.query.QueryPlan;
+
+/**
+ * InMemoryPlanReader: plan reader test double with preset estimates by SQL.
+ * @author valdo
+ */
+public class InMemoryPlanReader implements PlanReader {
+
+    private final Map<String, long[]> plans = new HashMap<>();
+    private int explained = 0;
+
+    public InMemoryPlanReader add(String sql, long cost, long cardinality) {
+        plans.put(sql, new long[] { cost, cardinality });
+        return this;
+    }
+
+    public int getExplained() {
+        return explained;
+    }
+
+    @Override
+    public QueryPlan explain(String connectionName, String sql) throws Exception {
+        explained++;
+        long[] p = plans.get(sql);
+        if (p == null) {
+            throw new IllegalArgumentException(String.format("No plan for %s", sql));
+        }
+        return new QueryPlan(p[0], p[1]);
+    }
+
+}